@@ -7,7 +7,6 @@ import com.github.fehinti.piece.Move;
 import com.github.fehinti.piece.MoveGenerator;
 
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Stack;
 
@@ -60,7 +59,7 @@ public final class Board120 {
     private final static byte WHITE = (byte) 0b00000000;
     public final static byte  MOVED_FLAG = (byte) 0b1;
     public static final int KING_SQ = 15;
-    static final int INIT_BUFFER = 512;
+    public static final int INIT_BUFFER = 512; // plies of history, the most moves a board can make
 
     // ! public int lastEntry = 0;
 
@@ -71,6 +70,8 @@ public final class Board120 {
     private byte castlingRights;
     private byte enPassant;
     private long zobristKey; // hashKey for a single position
+    private long materialKey; // piece count of every piece type, see Material
+    private long pawnKey; // zobrist key of the pawns only, keys the pawn hash table
 
     // additional piece list for each type : efficient lookup
     // for move generation to avoid scanning the board for moves
@@ -78,8 +79,12 @@ public final class Board120 {
     private final int[] blackPieceList;
     private final int[] playHistory;
     private final int[] irreversibleAspect;
+    private final long[] keyHistory; // zobrist key before the move played at each ply
+    private final long[] materialHistory; // material key before the move played at each ply
+    private final long[] pawnKeyHistory; // pawn key before the move played at each ply
     private int ply;
     Stack<Integer> captureEntry;
+    private PieceObserver observer; // optional, told of every piece added or removed
 
 
     /**
@@ -108,26 +113,93 @@ public final class Board120 {
         captureEntry = new Stack<>();
         playHistory    = new int[INIT_BUFFER];
         irreversibleAspect    = new int[INIT_BUFFER];
+        keyHistory    = new long[INIT_BUFFER];
+        materialHistory = new long[INIT_BUFFER];
+        pawnKeyHistory = new long[INIT_BUFFER];
         ply = 0;
         zobristKey = ZobristHash.hashAtInit(this);
+        pawnKey = ZobristHash.pawnHashAtInit(this);
     }
 
-    public Board120(Board120 copy) {
-        this.board120 = new byte[copy.board120.length];
-        this.whitePieceList = new int[copy.whitePieceList.length];
-        this.blackPieceList = new int[copy.blackPieceList.length];
-        System.arraycopy(copy.board120, 0, this.board120, 0, this.board120.length);
-        this.sideToMove = copy.getSideToMove();
-        this.fullMoveCounter = copy.getFullMoveCounter();
-        this.halfMoveClock = copy.getHalfMoveClock();
-        this.enPassant = (byte) copy.getEnPassant();
-        this.setCastlingRights(copy.getCastlingRights());
+    /**
+     * resets this board to a position without allocating, as the constructor builds it: piece lists
+     * are rebuilt and sorted, keys recomputed, and the move history starts again at ply 0
+     * @param pieces 120 squares, copied
+     * @throws IllegalArgumentException if pieces does not have 120 elements
+     */
+    public void setPosition(byte[] pieces, boolean stm, int fmCounter, int hmClock, byte cRights, byte enPt) {
+        if (pieces == null || pieces.length != BOARD_SIZE_120)
+            throw new IllegalArgumentException("pieces must have 120 elements");
+        System.arraycopy(pieces, 0, board120, 0, BOARD_SIZE_120);
+        sideToMove = stm;
+        fullMoveCounter = fmCounter;
+        halfMoveClock = hmClock;
+        enPassant = enPt;
+        setCastlingRights(cRights);
         fillLists();
+        captureEntry.clear();
+        ply = 0;
+        zobristKey = ZobristHash.hashAtInit(this);
+        pawnKey = ZobristHash.pawnHashAtInit(this);
+        if (observer != null) observer.refresh(this);
+    }
+
+    public Board120(Board120 copy) {
+        this.board120 = new byte[BOARD_SIZE_120];
+        this.whitePieceList = new int[MAX_LEN_16];
+        this.blackPieceList = new int[MAX_LEN_16];
         captureEntry = new Stack<>();
         playHistory    = new int[INIT_BUFFER];
         irreversibleAspect    = new int[INIT_BUFFER];
+        keyHistory    = new long[INIT_BUFFER];
+        materialHistory = new long[INIT_BUFFER];
+        pawnKeyHistory = new long[INIT_BUFFER];
+        copyFrom(copy);
+    }
+
+    /**
+     * copies the position of src into this board without allocating. piece lists are copied as they are
+     * (not rebuilt and sorted) so moves generated on src keep a valid piece list index on this board.
+     * move history is not copied, this board starts again at ply 0 and only detects repetitions
+     * of positions reached after the copy.
+     * @param src position to copy
+     */
+    public void copyFrom(Board120 src) {
+        System.arraycopy(src.board120, 0, board120, 0, BOARD_SIZE_120);
+        System.arraycopy(src.whitePieceList, 0, whitePieceList, 0, MAX_LEN_16);
+        System.arraycopy(src.blackPieceList, 0, blackPieceList, 0, MAX_LEN_16);
+        sideToMove = src.sideToMove;
+        fullMoveCounter = src.fullMoveCounter;
+        halfMoveClock = src.halfMoveClock;
+        castlingRights = src.castlingRights;
+        enPassant = src.enPassant;
+        zobristKey = src.zobristKey;
+        materialKey = src.materialKey;
+        pawnKey = src.pawnKey;
+        captureEntry.clear();
         ply = 0;
-        this.zobristKey = copy.zobristKey;
+        if (observer != null) observer.refresh(this);
+    }
+
+    /**
+     * @param observer notified of every piece added to or removed from the board by make, null to detach
+     */
+    public void setPieceObserver(PieceObserver observer) {
+        this.observer = observer;
+        if (observer != null) observer.refresh(this);
+    }
+
+    /**
+     * copy-make: plays move on a copy of src in dst, src is left untouched. dst is meant to be a
+     * preallocated slot (e.g. one board per ply per thread) so child positions can be handed to
+     * other threads without sharing a board that is made and unmade.
+     * @param src  parent position
+     * @param move move to play, generated on src
+     * @param dst  child position, overwritten
+     */
+    public static void copyMake(Board120 src, int move, Board120 dst) {
+        dst.copyFrom(src);
+        dst.make(move);
     }
 
     public static int getMailbox64Number(int index) {
@@ -141,6 +213,7 @@ public final class Board120 {
     private void fillLists() {
         Arrays.fill(whitePieceList, OFF_BOARD);
         Arrays.fill(blackPieceList, OFF_BOARD);
+        materialKey = 0L;
 
         int wp= 0;
         int bp= 0;
@@ -149,6 +222,7 @@ public final class Board120 {
         for (int sq = 0; sq < BOARD_SIZE; sq++) {
             int square = getMailbox64Number(sq);
             int value = board120[square];
+            if (value != 0) materialKey += Material.unit(value);
             if (value > 0) {
                 if (value == WKING) whitePieceList[wk] = ((value << RANK_8) | square);
                 else whitePieceList[wp++] = ((value << RANK_8) | square);
@@ -168,14 +242,16 @@ public final class Board120 {
         sortDescending(blackPieceList);
     }
 
+    // insertion sort of the 15 entries before the king, no boxing so setPosition does not allocate
     private void sortDescending(int[] arr) {
-        Integer[] copy = new Integer[KING_SQ];
-        for (int i = 0; i < KING_SQ; i++) {
-            copy[i] = arr[i];
-        }
-        Arrays.sort(copy, Collections.reverseOrder());
-        for (int i = 0; i < KING_SQ; i++) {
-           arr[i] = copy[i];
+        for (int i = 1; i < KING_SQ; i++) {
+            int value = arr[i];
+            int j = i - 1;
+            while (j >= 0 && arr[j] < value) {
+                arr[j + 1] = arr[j];
+                j--;
+            }
+            arr[j + 1] = value;
         }
     }
 
@@ -278,6 +354,14 @@ public final class Board120 {
         return copy;
     }
 
+    /**
+     * copies both piece lists without allocating, white into dst[0..15] and black into dst[16..31]
+     */
+    public void copyPieceLists(int[] dst) {
+        System.arraycopy(whitePieceList, 0, dst, 0, MAX_LEN_16);
+        System.arraycopy(blackPieceList, 0, dst, MAX_LEN_16, MAX_LEN_16);
+    }
+
     public byte getPieceOnSquare(int index) {
         if (index < 0 || index > 119) throw new IllegalArgumentException("index out of bounds.");
         return board120[index];
@@ -291,6 +375,60 @@ public final class Board120 {
         return whitePieceList[KING_SQ] & 0xff;
     }
 
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    public long getPawnKey() {
+        return pawnKey;
+    }
+
+    public long getMaterialKey() {
+        return materialKey;
+    }
+
+    /**
+     * @return true if neither side has enough material left to mate. only bishop against bishop
+     * needs to look at the board, every other case is decided by the material key.
+     */
+    public boolean hasInsufficientMaterial() {
+        if (Material.isInsufficient(materialKey)) return true;
+        if (materialKey != Material.KBKB) return false;
+        int wSquare = 0, bSquare = 0;
+        for (int i = 0; i < KING_SQ; i++) {
+            if (((whitePieceList[i] >> RANK_8) & 0xff) == WBISHOP) wSquare = whitePieceList[i] & 0xff;
+            if (((blackPieceList[i] >> RANK_8) & 0xff) == -BBISHOP) bSquare = blackPieceList[i] & 0xff;
+        }
+        return COLOR[wSquare] == COLOR[bSquare]; // bishops on the same color cannot mate
+    }
+
+    /**
+     * two-fold repetition, cheap enough to call at every node of the search: has the current position
+     * occurred before since the last irreversible move (capture or pawn move)? only positions with the
+     * same side to move can match, so the history is scanned backwards two plies at a time.
+     */
+    public boolean isRepetition() {
+        int limit = Math.min(halfMoveClock, ply);
+        // a position cannot repeat within 2 plies, start 4 plies back
+        for (int i = 4; i <= limit; i += 2) {
+            if (keyHistory[ply - i] == zobristKey) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the current position occurred twice before since the last irreversible move,
+     * used to adjudicate a game draw by threefold repetition.
+     */
+    public boolean isThreefoldRepetition() {
+        int limit = Math.min(halfMoveClock, ply);
+        int count = 0;
+        for (int i = 4; i <= limit; i += 2) {
+            if (keyHistory[ply - i] == zobristKey && ++count == 2) return true;
+        }
+        return false;
+    }
+
     public int getEnPassant() {
         return enPassant;
     }
@@ -324,6 +462,18 @@ public final class Board120 {
         return OFF_BOARD;
     }
 
+    /**
+     * @param square mailbox 120 square holding a piece of the side to move
+     * @return index of that piece in the side to move's piece list, OFF_BOARD if not found
+     */
+    public int findPieceListIndex(int square) {
+        int[] piecelist = (sideToMove) ? whitePieceList : blackPieceList;
+        for (int index = 0; index < piecelist.length; index++) {
+            if (piecelist[index] != OFF_BOARD && (piecelist[index] & 0xff) == square) return index;
+        }
+        return OFF_BOARD;
+    }
+
     public void make(int move) {
         int flag = getFlag(move);
         int to = getTargetSquare(move);
@@ -336,6 +486,9 @@ public final class Board120 {
 
         addMoveToHistory(move);
         addIrreversibleAspect();
+        if (observer != null) observer.push();
+        // castling rights and enpassant are hashed out here and hashed back in once the move is made
+        zobristKey ^= ZobristHash.castlingKey(castlingRights) ^ ZobristHash.enPassantKey(enPassant);
 
         if ((piece == WKING || piece == BKING || piece == WROOK || piece == BROOK)
                 && flag != FLAG_CASTLE) onRookMove(from,  piece, flag);
@@ -352,19 +505,21 @@ public final class Board120 {
         int val = Math.abs(piece);
         if (captured != 0) { // capture on the board
             if (flag == FLAG_EN_PASSANT) {
-                assert((sideToMove) ? board120[to] == BPAWN : board120[to] == WPAWN);
                 int epSq = (sideToMove) ? enPassant - 10 : enPassant + 10;
+                assert((sideToMove) ? board120[epSq] == BPAWN : board120[epSq] == WPAWN);
                 xindex = getPieceListIndex( captured, epSq , true);
             } else xindex = getPieceListIndex(captured, to, true);
             assert(xindex != OFF_BOARD);
             captureEntry.push(captured << RANK_8 | xindex); // store index of captured piece
+            materialKey -= Material.unit((flag == FLAG_EN_PASSANT) ? ((sideToMove) ? BPAWN : WPAWN) : board120[to]);
         }
 
         switch (flag) {
             case FLAG_QUIET, FLAG_DOUBLE_PAWN_PUSH -> {
                 assert(board120[to] == EMPT_SQ);
                 makeMove(from, to, piece);
-                halfMoveClock++;
+                // pawn moves are irreversible and reset the clock
+                halfMoveClock = (val == WPAWN || val == -BPAWN) ? EMPT_SQ : halfMoveClock + 1;
                 boolean found = incrementalUpdate(side, index, (val << RANK_8 | to), (val << RANK_8 | from));
                 if (!found) throw new RuntimeException("Error f=quiet&dpPush");
                 if (flag == FLAG_DOUBLE_PAWN_PUSH) {
@@ -384,11 +539,15 @@ public final class Board120 {
                 if (sideToMove) {
                     xpos = to - 10; // black piece to capture is a square below enpassnt
                     zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to - 10), BPAWN);
+                    pawnKey ^= ZobristHash.zobristKey(getMailbox120Number(to - 10), BPAWN);
+                    if (observer != null) observer.remove(BPAWN, getMailbox120Number(to - 10));
                     assert(board120[xpos] == BPAWN);
                 }
                 else {
                     xpos = to + 10; // white piece to capture is a square above enpassant
                     zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to + 10), WPAWN);
+                    pawnKey ^= ZobristHash.zobristKey(getMailbox120Number(to + 10), WPAWN);
+                    if (observer != null) observer.remove(WPAWN, getMailbox120Number(to + 10));
                     assert(board120[xpos] == WPAWN);
                 }
                 board120[xpos] = EMPT_SQ;
@@ -407,6 +566,14 @@ public final class Board120 {
                 zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(from), piece); // XOR out capturER
                 zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to),   board120[to]); // XOR out captured
                 zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to),   piece); // XOR in
+                if (isPawn(piece)) pawnKey ^= ZobristHash.zobristKey(getMailbox120Number(from), piece)
+                        ^ ZobristHash.zobristKey(getMailbox120Number(to), piece);
+                if (isPawn(board120[to])) pawnKey ^= ZobristHash.zobristKey(getMailbox120Number(to), board120[to]);
+                if (observer != null) {
+                    observer.remove(piece, getMailbox120Number(from));
+                    observer.remove(board120[to], getMailbox120Number(to));
+                    observer.add(piece, getMailbox120Number(to));
+                }
                 board120[from] = EMPT_SQ;
                 board120[to]   = piece;
                 halfMoveClock = EMPT_SQ;
@@ -417,11 +584,19 @@ public final class Board120 {
             }
             case FLAG_PROMOTION, FLAG_PROMOTION_CAPTURE -> {
                 byte pp = getPromotionPiece(promotion);
+                materialKey += Material.unit(pp) - Material.unit(piece);
                 zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(from), piece);
-                zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to), board120[to]);
-                if (flag == FLAG_PROMOTION_CAPTURE) zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to), pp);
+                if (flag == FLAG_PROMOTION_CAPTURE) zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to), board120[to]);
+                zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to), pp);
+                pawnKey ^= ZobristHash.zobristKey(getMailbox120Number(from), piece);
+                if (observer != null) {
+                    observer.remove(piece, getMailbox120Number(from));
+                    if (flag == FLAG_PROMOTION_CAPTURE) observer.remove(board120[to], getMailbox120Number(to));
+                    observer.add(pp, getMailbox120Number(to));
+                }
                 board120[from] = EMPT_SQ;
                 board120[to] = pp;
+                halfMoveClock = EMPT_SQ;
                 boolean found2 = incrementalUpdate(side, index,
                         (Math.abs(pp) << RANK_8 | to), (Math.abs(piece) << RANK_8 | from));
                 if (!found2) throw new RuntimeException("Error f=promo, freeslot");
@@ -438,27 +613,23 @@ public final class Board120 {
                     if (!found3) throw new RuntimeException("Error f=cap&Promo, xside");
                 }
             }
-            case FLAG_CASTLE ->  makeCastle(from, to, piece);
+            case FLAG_CASTLE -> {
+                makeCastle(from, to, piece);
+                halfMoveClock++;
+            }
             default -> throw new IllegalStateException("Unexpected value: " + flag);
         }
         // enPassant no longer valid after every (non-double pawn push)move
         if (flag != FLAG_DOUBLE_PAWN_PUSH) enPassant =  OFF_BOARD;
         if (!isPieceWhite(piece)) fullMoveCounter++;
         sideToMove = !sideToMove;
-    }
-
-    private void updateHashOnCaptures(int from, int to, byte fPiece, byte tPiece) {
-        zobristKey ^= ZobristHash.zobristKey(from, fPiece); // XOR out
-        zobristKey ^= ZobristHash.zobristKey(to, tPiece); // XOR out captured
-    }
-
-    private void updateHashOnPromotin(int fm, int to, byte pp) {
-        zobristKey ^= ZobristHash.zobristKey(fm, board120[fm]); // XOR out
-        zobristKey ^= ZobristHash.zobristKey(to, board120[to]); // XOR out captured
-        zobristKey ^= ZobristHash.zobristKey(to, pp); // XOR out captured
+        zobristKey ^= ZobristHash.castlingKey(castlingRights) ^ ZobristHash.enPassantKey(enPassant);
+        zobristKey ^= ZobristHash.sideKey();
     }
 
     /**
+     * the zobrist key is not updated here, the key saved before the move was made is restored
+     * from the undo stack.
      * @param move 32 bit integer encoding of from square, target square, flags and captured piece
      */
     public void unmake(int move) {
@@ -501,18 +672,16 @@ public final class Board120 {
                             "\n" + promo +
                             "\n" + to);
                 }
-                makeMove(to, from, piece);
+                restoreMove(to, from, piece);
             }
             case FLAG_EN_PASSANT -> {
-                makeMove(to, from, piece); //reverse capturing pawn to its previous square
+                restoreMove(to, from, piece); //reverse capturing pawn to its previous square
                 assert(capturedPiece == WPAWN || capturedPiece == BPAWN);// captured piece is a square above enpassant
                 if (isPieceWhite(capturedPiece))  {
                     board120[enPassant + 10] = capturedPiece;
-                    zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(enPassant + 10), capturedPiece);
                 }
                 else {
                     board120[enPassant - 10] = capturedPiece;
-                    zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(enPassant - 10), capturedPiece);
                 }
                 boolean f1 = incrementalUpdate(side, index, encode(v, from), encode(v, to));
                 boolean f2 = incrementalUpdate(xside, xindex,
@@ -522,10 +691,9 @@ public final class Board120 {
             }
             case FLAG_CAPTURE -> {
                 assert(board120[from] == EMPT_SQ);
-                makeMove(to, from, piece); // return capturing piece
+                restoreMove(to, from, piece); // return capturing piece
                 assert(capturedPiece != EMPT_SQ);
                 board120[to] = capturedPiece; // returned captured piece
-                zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to), capturedPiece);
                 boolean f1 = incrementalUpdate(side, index, encode(v, from), encode(v, to));
                 boolean f2 = incrementalUpdate(xside, xindex,  encode(Math.abs(capturedPiece), to), OFF_BOARD);
                 if (!f1) throw new RuntimeException("Error updating capturing pc");
@@ -533,14 +701,13 @@ public final class Board120 {
             }
             case FLAG_PROMOTION, FLAG_PROMOTION_CAPTURE -> {
                 assert(board120[from] == EMPT_SQ);
-                if (sideToMove) makeMove(to, from, WPAWN);
-                else makeMove(to, from, BPAWN);
+                if (sideToMove) restoreMove(to, from, WPAWN);
+                else restoreMove(to, from, BPAWN);
                 int enc = (sideToMove) ? WPAWN : -BPAWN;
                 boolean found = incrementalUpdate(side, index, encode(enc, from), encode(v, to));
                 if (!found) throw new RuntimeException("Error restoring promoting pawn f=Promotion");
                 if (flag == FLAG_PROMOTION_CAPTURE) {
                     board120[to] = capturedPiece;
-                    zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to), capturedPiece);
                     // this has encoding would have been set to -1 in the make's incremental update
                     boolean fd = incrementalUpdate(xside, xindex, (Math.abs(capturedPiece) << RANK_8 | to ), OFF_BOARD);
                     if (!fd) throw new RuntimeException("Error rest;oring prev captured f=Promotion");
@@ -550,6 +717,7 @@ public final class Board120 {
             default -> throw new IllegalArgumentException();
         }
         if (!isPieceWhite(piece)) fullMoveCounter--;
+        if (observer != null) observer.pop();
     }
 
     private void unmakeCastle(int from, int to, int[] side, int index) {
@@ -559,7 +727,6 @@ public final class Board120 {
         if (sideToMove) {
             board120[E1] = WKING;
             if (to == G1) { // short castles
-                // 4 zobrist updates
                 board120[G1] = EMPT_SQ;
                 board120[F1] = EMPT_SQ; // undo rook's move
                 board120[H1] = WROOK;
@@ -569,10 +736,6 @@ public final class Board120 {
                 board120[D1] = EMPT_SQ; // undo rooks's move
                 board120[A1] = WROOK;
             }
-            zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to), WKING);
-            zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(from), WKING);
-            zobristKey ^= ZobristHash.zobristKey(getMailbox120Number((to) == C1 ? D1 : F1), WROOK);
-            zobristKey ^= ZobristHash.zobristKey(getMailbox120Number((to) == C1 ? A1 : H1), WROOK);
             ri = getPieceListIndex(rv, (to == C1) ? D1 : F1, false);
             fRook = incrementalUpdate(side, ri, encode(rv, (to == C1) ? A1 : H1),
                     encode(rv, (to == C1) ? D1 : F1));
@@ -593,14 +756,10 @@ public final class Board120 {
             fRook = incrementalUpdate(side, ri, encode(rv, (to == C8) ? A8 : H8),
                     encode(rv, (to == C8) ? D8 : F8));
 
-            zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to), BKING);
-            zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(from), BKING);
-            zobristKey ^= ZobristHash.zobristKey(getMailbox120Number((to) == C8 ? D8 : F8), BROOK);
-            zobristKey ^= ZobristHash.zobristKey(getMailbox120Number((to) == C8 ? A8 : H8), BROOK);
         }
         if (!fRook) throw new RuntimeException("Error updating Rook f=castle");
         int enc = (sideToMove) ? WKING : -BKING;
-        assert(index == 0);
+        assert(index == KING_SQ);
         boolean f1 = incrementalUpdate(side, index, encode(enc, from), encode(enc, to));
         if (!f1) throw new RuntimeException("Error updating kingside");
     }
@@ -647,7 +806,7 @@ public final class Board120 {
         boolean kEntry = incrementalUpdate(side, 15, (Math.abs(p) << RANK_8 | to),
                 ((Math.abs(p) << RANK_8) | from)); // king is always on index 15
         if (!kEntry) throw new RuntimeException("Error updating kingside");
-        assert(board120[rookFr] == WROOK || board120[rookFr] == BROOK);
+        assert(board120[rookTo] == WROOK || board120[rookTo] == BROOK);
         boolean rEntry = incrementalUpdate(side,
                 getPieceListIndex(Math.abs(val), rookFr, false),
                 (Math.abs(val) << RANK_8 | rookTo),
@@ -660,6 +819,24 @@ public final class Board120 {
         board120[to] = p;
         zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(from), p);
         zobristKey ^= ZobristHash.zobristKey(getMailbox120Number(to), p);
+        if (isPawn(p)) {
+            pawnKey ^= ZobristHash.zobristKey(getMailbox120Number(from), p);
+            pawnKey ^= ZobristHash.zobristKey(getMailbox120Number(to), p);
+        }
+        if (observer != null) {
+            observer.remove(p, getMailbox120Number(from));
+            observer.add(p, getMailbox120Number(to));
+        }
+    }
+
+    private static boolean isPawn(byte p) {
+        return p == WPAWN || p == BPAWN;
+    }
+
+    // same as makeMove without hashing, used by unmake where the key is restored wholesale
+    private void restoreMove(int from, int to, byte p) {
+        board120[from] = EMPT_SQ;
+        board120[to] = p;
     }
 
     private boolean incrementalUpdate(int[] side, int index, int encode, int validate) {
@@ -725,16 +902,22 @@ public final class Board120 {
 
     private void addIrreversibleAspect() { int ep = (enPassant & 0xff);   // Mask to 6 bits
         int cR = (castlingRights & 0xF) << 8; // Shift and mask to 4 bits
-        int hM = (halfMoveClock & 0x3F) << 16; // Shift and mask to 6 bits
+        int hM = (halfMoveClock & 0xFF) << 16; // Shift and mask to 8 bits
+        keyHistory[ply] = zobristKey;
+        materialHistory[ply] = materialKey;
+        pawnKeyHistory[ply] = pawnKey;
         irreversibleAspect[ply++] = (ep | cR | hM);
     }
 
     private void unaddIrreversibleAspect() {
+        zobristKey = keyHistory[ply - 1];
+        materialKey = materialHistory[ply - 1];
+        pawnKey = pawnKeyHistory[ply - 1];
         int irreversible = irreversibleAspect[--ply];
         int ep = (irreversible & 0xff);
         ep = (ep == 63) ?  OFF_BOARD : ep; // don't remember why 63 is here
         int cR = (irreversible >> 8) & 0x3f;
-        int hM = (irreversible >> 16) & 0x3f;
+        int hM = (irreversible >> 16) & 0xff;
         enPassant  = (byte) ep;
         castlingRights = ((byte) cR);
         halfMoveClock = hM;
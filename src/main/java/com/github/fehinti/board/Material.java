@@ -0,0 +1,101 @@
+package com.github.fehinti.board;
+
+import static com.github.fehinti.board.Board120Utils.*;
+
+/*
+ * Material signature of a position packed in a single long: 4 bits of piece count for each
+ * of the 12 piece types, indexed like the zobrist table (P,N,B,R,Q,K = 0..5, p,n,b,r,q,k = 6..11).
+ * The key is exact (it is the count itself) so it doubles as the per side, per type material
+ * count, and positions with the same material share the same key, e.g. every KRvK ending.
+ * Board120 adds or removes a piece's unit on captures and promotions.
+ */
+public class Material {
+
+    static final int BITS = 4;
+    static final long MASK = 0xfL;
+    // black piece values are -127..-122, see ZobristHash.ADJUST_BLACK_INDEX
+    static final int ADJUST_BLACK_INDEX = 133;
+
+    // phase weights of P, N, B, R, Q, K, a full board of pieces makes 24
+    static final int[] PHASE_WEIGHT = { 0, 1, 1, 2, 4, 0 };
+    public static final int MAX_PHASE = 24;
+    // phase contributed by one side, indexed by the 16 bits holding that side's N, B, R, Q counts
+    private static final byte[] PHASE = new byte[1 << 16];
+
+    public static final long KK   = key("KK");
+    public static final long KNK  = key("KNK");
+    public static final long KKN  = key("KKN");
+    public static final long KBK  = key("KBK");
+    public static final long KKB  = key("KKB");
+    public static final long KBKB = key("KBKB");
+
+    static {
+        for (int i = 0; i < PHASE.length; i++) {
+            int phase = 0;
+            for (int pc = 1; pc <= 4; pc++) phase += PHASE_WEIGHT[pc] * ((i >> ((pc - 1) * BITS)) & 0xf);
+            PHASE[i] = (byte) Math.min(phase, Byte.MAX_VALUE);
+        }
+    }
+
+    /**
+     * @param piece piece value on the board (WPAWN..WKING, BPAWN..BKING)
+     * @return 0..11 index of the piece type
+     */
+    public static int index(int piece) {
+        return (piece > 0) ? piece - 1 : ADJUST_BLACK_INDEX + piece;
+    }
+
+    /**
+     * @param piece piece value on the board
+     * @return value to add to the key when the piece appears, subtract when it leaves the board
+     */
+    public static long unit(int piece) {
+        return 1L << (index(piece) * BITS);
+    }
+
+    /**
+     * @param key   material key
+     * @param piece piece value on the board
+     * @return number of pieces of that type and color
+     */
+    public static int count(long key, int piece) {
+        return (int) ((key >> (index(piece) * BITS)) & MASK);
+    }
+
+    /**
+     * @return game phase 0 (kings and pawns only) to 24 (all minor and major pieces on the board)
+     */
+    public static int phase(long key) {
+        int white = PHASE[(int) ((key >> BITS) & 0xffff)];
+        int black = PHASE[(int) ((key >> ((index(BKNIGHT)) * BITS)) & 0xffff)];
+        return Math.min(white + black, MAX_PHASE);
+    }
+
+    /**
+     * @return true if neither side can possibly mate, bishop against bishop (KBKB) is not covered here
+     * because it depends on the color of the bishops' squares
+     */
+    public static boolean isInsufficient(long key) {
+        return key == KK || key == KNK || key == KKN || key == KBK || key == KKB;
+    }
+
+    /**
+     * @param signature white pieces then black pieces, each starting with the king, e.g. "KRPKR"
+     * @return material key of that signature, used to build lookup tables keyed on material
+     */
+    public static long key(String signature) {
+        if (signature == null || signature.isEmpty() || signature.charAt(0) != 'K')
+            throw new IllegalArgumentException("Invalid material signature " + signature);
+        long key = 0L;
+        boolean white = true;
+        for (int i = 0; i < signature.length(); i++) {
+            char ch = signature.charAt(i);
+            if (ch == 'K' && i > 0) white = false;
+            byte piece = Board120.mapCharToByte(white ? ch : Character.toLowerCase(ch));
+            if (piece == OFF_BOARD || piece == EMPTY)
+                throw new IllegalArgumentException("Invalid material signature " + signature);
+            key += unit(piece);
+        }
+        return key;
+    }
+}
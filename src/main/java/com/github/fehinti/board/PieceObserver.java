@@ -0,0 +1,31 @@
+package com.github.fehinti.board;
+
+/**
+ * Notified by {@code Board120} of every piece placed on or removed from a square, so state that is
+ * updated incrementally (e.g. a neural network accumulator) follows make and unmake.
+ * make calls {@code push} before the board changes and unmake calls {@code pop} once the board is
+ * restored, an observer keeping one entry per ply never has to reverse an update.
+ */
+public interface PieceObserver {
+
+    void push();
+
+    void pop();
+
+    /**
+     * @param piece  piece value on the board
+     * @param square 0..63 square the piece is placed on
+     */
+    void add(byte piece, int square);
+
+    /**
+     * @param piece  piece value on the board
+     * @param square 0..63 square the piece is removed from
+     */
+    void remove(byte piece, int square);
+
+    /**
+     * rebuilds the observer's state from scratch, called when it is attached or the board is copied into
+     */
+    void refresh(Board120 board);
+}
@@ -0,0 +1,181 @@
+package com.github.fehinti.board;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Consumer;
+
+import static com.github.fehinti.board.Board120Utils.*;
+
+/*
+ * Fixed size binary position, 32 bytes against the 40 to 90 characters of a FEN, for datasets,
+ * caches and the wire. Big endian:
+ *   0..7   occupancy, bit n set when square n (a1 = 0 .. h8 = 63) holds a piece
+ *   8..23  a 4 bit code per occupied square in square order, high nibble first: 1..6 white pawn
+ *          to king, 9..14 black pawn to king, unused nibbles 0
+ *   24..31 state: bit 0 white to move, bits 1..4 castling rights, bits 5..8 en passant file + 1
+ *          (0 none), bits 9..16 half move clock, bits 17..32 full move counter, the rest 0
+ * Encoding and decoding do not allocate: a codec keeps the 120 square scratch board it decodes
+ * through, so a codec is used by one thread at a time, and decoding resets an existing board
+ * with Board120.setPosition. The bulk methods stream whole buffers of positions through one board.
+ */
+public final class PositionCodec {
+
+    public static final int SIZE = 32;
+    static final int OCCUPANCY = 0, PIECES = 8, STATE = 24;
+    static final int MAX_PIECES = 32;
+    static final int BLACK_CODE = 8;
+    static final int MAX_HALF_MOVE_CLOCK = 0xff;
+    static final int MAX_FULL_MOVE_COUNTER = 0xffff;
+
+    private final byte[] squares = new byte[BOARD_SIZE_120]; // scratch for decode, off board squares set once
+    private long occupancy, high, low; // packed by pack, piece codes 0..15 in high, 16..31 in low
+
+    public PositionCodec() {
+        for (int sq = 0; sq < BOARD_SIZE_120; sq++) {
+            squares[sq] = (Board120.getMailbox120Number(sq) == OFF_BOARD) ? (byte) OFF_BOARD : EMPTY;
+        }
+    }
+
+    static int code(byte piece) {
+        return (piece > 0) ? piece : BLACK_CODE + piece - BPAWN + WPAWN;
+    }
+
+    static byte piece(int code) {
+        if (code >= WPAWN && code <= WKING) return (byte) code;
+        if (code >= BLACK_CODE + WPAWN && code <= BLACK_CODE + WKING) return (byte) (code - BLACK_CODE - WPAWN + BPAWN);
+        throw new IllegalArgumentException("Invalid piece code " + code);
+    }
+
+    private void pack(Board120 board) {
+        occupancy = 0;
+        high = 0;
+        low = 0;
+        int n = 0;
+        for (int sq = 0; sq < BOARD_SIZE; sq++) {
+            byte piece = board.getPieceOnSquare(Board120.getMailbox64Number(sq));
+            if (piece == EMPTY) continue;
+            if (n == MAX_PIECES) throw new IllegalArgumentException("More than " + MAX_PIECES + " pieces");
+            occupancy |= 1L << sq;
+            long code = code(piece);
+            if (n < 16) high |= code << (60 - 4 * n);
+            else low |= code << (60 - 4 * (n - 16));
+            n++;
+        }
+    }
+
+    private static long state(Board120 board) {
+        int half = board.getHalfMoveClock(), full = board.getFullMoveCounter();
+        if (half < 0 || half > MAX_HALF_MOVE_CLOCK || full < 0 || full > MAX_FULL_MOVE_COUNTER)
+            throw new IllegalArgumentException("Move counters out of range: " + half + " " + full);
+        int ep = board.getEnPassant();
+        long state = board.getSideToMove() ? 1 : 0;
+        state |= (long) (board.getCastlingRights() & 0xf) << 1;
+        state |= (long) ((ep == OFF_BOARD) ? 0 : ep % 10) << 5; // 120 square file is 1..8
+        state |= (long) half << 9;
+        state |= (long) full << 17;
+        return state;
+    }
+
+    /**
+     * writes the 32 bytes of board at dst[offset]
+     * @throws IllegalArgumentException if the board has more than 32 pieces or counters out of range
+     */
+    public void encode(Board120 board, byte[] dst, int offset) {
+        pack(board);
+        putLong(dst, offset + OCCUPANCY, occupancy);
+        putLong(dst, offset + PIECES, high);
+        putLong(dst, offset + PIECES + 8, low);
+        putLong(dst, offset + STATE, state(board));
+    }
+
+    /**
+     * resets board to the position of the 32 bytes at src[offset]
+     * @throws IllegalArgumentException if the bytes are not a position
+     */
+    public void decode(byte[] src, int offset, Board120 board) {
+        decode(getLong(src, offset + OCCUPANCY), getLong(src, offset + PIECES), getLong(src, offset + PIECES + 8),
+                getLong(src, offset + STATE), board);
+    }
+
+    /**
+     * relative put of the 32 bytes of board, big endian whatever the order of dst
+     */
+    public void encode(Board120 board, ByteBuffer dst) {
+        if (dst.remaining() < SIZE) throw new BufferOverflowException();
+        pack(board);
+        long state = state(board);
+        boolean swap = dst.order() != ByteOrder.BIG_ENDIAN;
+        dst.putLong(swap ? Long.reverseBytes(occupancy) : occupancy)
+                .putLong(swap ? Long.reverseBytes(high) : high)
+                .putLong(swap ? Long.reverseBytes(low) : low)
+                .putLong(swap ? Long.reverseBytes(state) : state);
+    }
+
+    /**
+     * relative get of 32 bytes into board, big endian whatever the order of src
+     */
+    public void decode(ByteBuffer src, Board120 board) {
+        if (src.remaining() < SIZE) throw new BufferUnderflowException();
+        boolean swap = src.order() != ByteOrder.BIG_ENDIAN;
+        long occupied = src.getLong(), pieces = src.getLong(), more = src.getLong(), state = src.getLong();
+        if (swap) decode(Long.reverseBytes(occupied), Long.reverseBytes(pieces), Long.reverseBytes(more),
+                Long.reverseBytes(state), board);
+        else decode(occupied, pieces, more, state, board);
+    }
+
+    private void decode(long occupancy, long high, long low, long state, Board120 board) {
+        if (Long.bitCount(occupancy) > MAX_PIECES) throw new IllegalArgumentException("More than " + MAX_PIECES + " pieces");
+        for (int sq = 0; sq < BOARD_SIZE; sq++) squares[Board120.getMailbox64Number(sq)] = EMPTY;
+        int n = 0;
+        for (long bits = occupancy; bits != 0; bits &= bits - 1, n++) {
+            int sq = Long.numberOfTrailingZeros(bits);
+            int code = (int) (((n < 16) ? high >>> (60 - 4 * n) : low >>> (60 - 4 * (n - 16))) & 0xf);
+            squares[Board120.getMailbox64Number(sq)] = piece(code);
+        }
+        boolean white = (state & 1) != 0;
+        int file = (int) (state >>> 5) & 0xf;
+        if (file > 8) throw new IllegalArgumentException("Invalid en passant file " + file);
+        // the square behind the pawn that moved two squares: rank 6 when white is to move, else rank 3
+        byte ep = (file == 0) ? OFF_BOARD : (byte) Board120.getMailbox64Number((white ? 40 : 16) + file - 1);
+        board.setPosition(squares, white, (int) (state >>> 17) & MAX_FULL_MOVE_COUNTER,
+                (int) (state >>> 9) & MAX_HALF_MOVE_CLOCK, (byte) ((state >>> 1) & 0xf), ep);
+    }
+
+    /**
+     * encodes boards one after the other from the position of dst
+     */
+    public void encodeAll(Iterable<Board120> boards, ByteBuffer dst) {
+        for (Board120 board : boards) encode(board, dst);
+    }
+
+    /**
+     * decodes every remaining position of src into board, handing it to consumer after each one, the
+     * same board is reset each time so the consumer copies what it keeps
+     * @return number of positions
+     */
+    public int decodeAll(ByteBuffer src, Board120 board, Consumer<Board120> consumer) {
+        if (src.remaining() % SIZE != 0) throw new IllegalArgumentException(src.remaining() + " bytes is not a number of positions");
+        int n = 0;
+        while (src.hasRemaining()) {
+            decode(src, board);
+            consumer.accept(board);
+            n++;
+        }
+        return n;
+    }
+
+    private static void putLong(byte[] dst, int at, long value) {
+        for (int i = 7; i >= 0; i--) {
+            dst[at + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] src, int at) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) value = (value << 8) | (src[at + i] & 0xff);
+        return value;
+    }
+}
@@ -21,16 +21,20 @@ public class ZobristHash {
     // black piece value on board is in range -127 (bpawn) to -122(bking)
     // 133 maps this index to 6 (bpawn) to 11(bking) to index the zobrist table
     static final int ADJUST_BLACK_INDEX = 133;
-    private static final Random random = new Random();
+    // fixed seed, the keys are the same in every run so they can be stored, e.g. in a position index
+    private static final long SEED = 0x5eed_2b1d_c0de_f00dL;
+    private static final Random random = new Random(SEED);
 
     // each square (0..63) and piece combination (K,Q,R,B,N,P,k,q,r,b,n,p)
     private static final long[][] table = new long[BOARD_SIZE][PIECE_TYPE_COUNT];
     private static final long BLACK_TO_MOVE = Math.abs(random.nextLong());
-    // * For future use
     private static final long BLACK_KING_SIDE_CASTLE =  random.nextLong();
     private static final long BLACK_QUEEN_SIDE_CASTLE =  random.nextLong();
     private static final long WHITE_KING_SIDE_CASTLE =  random.nextLong();
     private static final long WHITE_QUEEN_SIDE_CASTLE =  random.nextLong();
+    // one key per combination of the 4 castling bits, one key per en passant file
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[FILE_H];
 
     static {
         for (int i = 0; i < BOARD_SIZE; i++) {
@@ -38,6 +42,15 @@ public class ZobristHash {
                 table[i][j] = Math.abs(random.nextLong());
             }
         }
+        for (int rights = 0; rights < CASTLING.length; rights++) {
+            long key = 0L;
+            if ((rights & WHITE_KINGSIDE) != 0)  key ^= WHITE_KING_SIDE_CASTLE;
+            if ((rights & WHITE_QUEENSIDE) != 0) key ^= WHITE_QUEEN_SIDE_CASTLE;
+            if ((rights & BLACK_KINGSIDE) != 0)  key ^= BLACK_KING_SIDE_CASTLE;
+            if ((rights & BLACK_QUEENSIDE) != 0) key ^= BLACK_QUEEN_SIDE_CASTLE;
+            CASTLING[rights] = key;
+        }
+        for (int file = 0; file < FILE_H; file++) EN_PASSANT_FILE[file] = random.nextLong();
     }
 
     // * this is only used at initialization
@@ -51,9 +64,35 @@ public class ZobristHash {
                 result ^= table[i][index];
             }
         }
+        result ^= castlingKey(board.getCastlingRights());
+        result ^= enPassantKey(board.getEnPassant());
+        return result;
+    }
+
+    // * pawn only key, pawn structure evaluation is cached on this key
+    public static long pawnHashAtInit(Board120 board) {
+        long result = 0L;
+        for (int i = 0; i < 64; i++) {
+            byte piece = board.getPieceOnSquare(Board120.getMailbox64Number(i));
+            if (piece == WPAWN || piece == BPAWN) result ^= zobristKey(i, piece);
+        }
         return result;
     }
 
+    public static long sideKey() {
+        return BLACK_TO_MOVE;
+    }
+
+    public static long castlingKey(int rights) {
+        return CASTLING[rights & 0xf];
+    }
+
+    // * enPassant is a mailbox 120 square, 0 is returned when there is none on the board
+    public static long enPassantKey(int enPassant) {
+        if (enPassant == OFF_BOARD) return 0L;
+        return EN_PASSANT_FILE[(enPassant % 10) - 1];
+    }
+
     // * this is used to incrementally update the hashvalue of the board
     // * we take advantage of the fact that the changes on a board are only local
     // * e.g a white pawn push from a2 to a4 requires XOR out the current hash with
@@ -0,0 +1,246 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ * Analyses every position of an EPD or FEN file in one JVM. A reader thread streams lines into a
+ * bounded queue, each worker thread owns a Board120 and a Search and takes positions from it, and
+ * a writer puts results back in input order. A semaphore caps the positions between the reader
+ * and the writer (queued, searched or waiting for an earlier line), so memory stays flat whatever
+ * the size of the input.
+ *
+ * Input: one position per line, FEN or EPD (4 fields then opcodes, only id is kept), blank lines
+ * and lines starting with # are skipped. Output: one EPD line per position, in input order
+ *   <4 fen fields> bm <move>; ce <cp>; acd <depth>; acn <nodes>; acs <seconds>; [id "<id>";]
+ * bm is in coordinate notation (e2e4), ce is from the side to move's point of view. A line that
+ * is not a position, or whose search throws, is written back with an error opcode. A worker that
+ * dies on anything else fails the run: it drains the queue and releases the reader, and run
+ * rethrows once every thread has stopped.
+ */
+public class BatchAnalysis {
+
+    static final int EVAL_CACHE_ENTRIES = 1 << 16;
+
+    record Task(long seq, String line) {
+    }
+
+    record Output(long seq, String line) {
+    }
+
+    private static final Task END = new Task(-1, null);
+    private static final Output DONE = new Output(-1, null);
+
+    private final Search.Limits limits;
+    private final int threads;
+    private final int window; // positions in flight
+    private final Supplier<Evaluator> evaluators; // one evaluator per worker
+    private final AtomicLong nodes = new AtomicLong();
+    // first write error or dead worker, stops the reader
+    private volatile Exception failure;
+
+    public BatchAnalysis(Search.Limits limits, int threads) {
+        this(limits, threads, () -> new EvalCache(PESTO.getInstance(), EVAL_CACHE_ENTRIES));
+    }
+
+    BatchAnalysis(Search.Limits limits, int threads, Supplier<Evaluator> evaluators) {
+        if (threads <= 0) throw new IllegalArgumentException("Invalid thread count " + threads);
+        this.limits = limits;
+        this.threads = threads;
+        this.window = threads * 16;
+        this.evaluators = evaluators;
+    }
+
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    /**
+     * @return number of lines written
+     */
+    public long run(BufferedReader in, BufferedWriter out) throws IOException, InterruptedException {
+        BlockingQueue<Task> tasks = new ArrayBlockingQueue<>(threads * 4);
+        BlockingQueue<Output> results = new ArrayBlockingQueue<>(window + threads);
+        Semaphore inFlight = new Semaphore(window);
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> work(tasks, results, inFlight), "analysis-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        long[] written = { 0 };
+        failure = null;
+        Thread writer = new Thread(() -> {
+            try {
+                written[0] = write(results, out, inFlight);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "analysis-writer");
+        writer.start();
+
+        long seq = 0;
+        try {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                inFlight.acquire();
+                if (failure != null) break;
+                tasks.put(new Task(seq++, line));
+            }
+        } finally {
+            // positions still queued after a failure are not analysed, a dead worker takes no END
+            if (failure != null) tasks.clear();
+            for (int i = 0; i < threads; i++) tasks.put(END);
+            for (Thread worker : workers) worker.join();
+            results.put(DONE);
+            writer.join();
+        }
+        if (failure instanceof IOException e) throw e;
+        if (failure instanceof RuntimeException e) throw e;
+        return written[0];
+    }
+
+    private void work(BlockingQueue<Task> tasks, BlockingQueue<Output> results, Semaphore inFlight) {
+        try {
+            Board120 board = FENParser.startPos120();
+            Search search = new Search(evaluators.get());
+            for (Task task = tasks.take(); task != END; task = tasks.take()) {
+                results.put(new Output(task.seq(), analyse(board, search, task.line())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error e) {
+            // the line of this worker is never written: stop the run instead of letting the writer wait for it
+            if (failure == null) failure = new IllegalStateException(Thread.currentThread().getName() + " failed", e);
+            tasks.clear();
+            inFlight.release(window);
+        }
+    }
+
+    String analyse(Board120 board, Search search, String line) {
+        BatchPositionEvent event = JfrEvents.ENABLED ? new BatchPositionEvent() : null;
+        if (event != null) event.begin();
+        String[] fields = line.split("\\s+");
+        if (fields.length < 4) return line + " error \"not a position\";";
+        String position = String.join(" ", fields[0], fields[1], fields[2], fields[3]);
+        // a FEN has the two move counters, in EPD the opcodes follow the 4th field
+        boolean fen = fields.length >= 6 && isNumber(fields[4]) && isNumber(fields[5]);
+        String fenString = fen ? position + " " + fields[4] + " " + fields[5] : position + " 0 1";
+        try {
+            board.copyFrom(FENParser.parseFENotation120(fenString));
+        } catch (RuntimeException e) {
+            return error(line, e);
+        }
+        Search.Result result;
+        try {
+            result = search.search(board, limits);
+        } catch (RuntimeException e) {
+            return error(line, e);
+        }
+        nodes.addAndGet(result.nodes());
+        if (event != null && event.shouldCommit()) {
+            event.fen = fenString;
+            event.depth = result.depth();
+            event.nodes = result.nodes();
+            event.score = result.score();
+            event.bestMove = result.bestMove();
+            event.commit();
+        }
+        StringBuilder sb = new StringBuilder(position)
+                .append(" bm ").append(result.bestMove())
+                .append("; ce ").append(result.score())
+                .append("; acd ").append(result.depth())
+                .append("; acn ").append(result.nodes())
+                .append(String.format("; acs %.3f;", result.nanos() / 1e9));
+        String id = epdId(line);
+        if (id != null) sb.append(" id \"").append(id).append("\";");
+        return sb.toString();
+    }
+
+    private static String error(String line, RuntimeException e) {
+        String message = (e.getMessage() != null) ? e.getMessage() : e.getClass().getSimpleName();
+        return line + " error \"" + message.replace('"', '\'') + "\";";
+    }
+
+    private static boolean isNumber(String s) {
+        for (int i = 0; i < s.length(); i++) if (!Character.isDigit(s.charAt(i))) return false;
+        return !s.isEmpty();
+    }
+
+    static String epdId(String line) {
+        int i = line.indexOf(" id \"");
+        if (i < 0) return null;
+        int end = line.indexOf('"', i + 5);
+        return (end < 0) ? null : line.substring(i + 5, end);
+    }
+
+    // writes results as soon as every earlier line is out, one permit back to the reader per line.
+    // After a write error results are still taken and dropped so no worker blocks
+    private long write(BlockingQueue<Output> results, BufferedWriter out, Semaphore inFlight)
+            throws InterruptedException {
+        Map<Long, String> pending = new HashMap<>();
+        long next = 0;
+        for (Output output = results.take(); output != DONE; output = results.take()) {
+            pending.put(output.seq(), output.line());
+            for (String line = pending.remove(next); line != null; line = pending.remove(next)) {
+                if (failure == null) {
+                    try {
+                        out.write(line);
+                        out.newLine();
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                next++;
+                inFlight.release();
+            }
+            if (failure == null && pending.isEmpty()) flush(out);
+        }
+        if (failure == null) flush(out);
+        return next;
+    }
+
+    private void flush(BufferedWriter out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    // args: input file, output file, depth, [nodes per position, 0 = no limit] [threads]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.err.println("usage: BatchAnalysis <input epd|fen> <output epd> <depth> [nodes] [threads]");
+            return;
+        }
+        int depth = Integer.parseInt(args[2]);
+        long nodeLimit = (args.length > 3) ? Long.parseLong(args[3]) : 0;
+        int threads = (args.length > 4) ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        BatchAnalysis analysis = new BatchAnalysis(new Search.Limits(depth, nodeLimit), threads);
+        long st = System.nanoTime();
+        long positions;
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(args[0]));
+             BufferedWriter out = Files.newBufferedWriter(Paths.get(args[1]))) {
+            positions = analysis.run(in, out);
+        }
+        double seconds = (System.nanoTime() - st) / 1e9;
+        System.out.printf("%d positions, %d nodes, %.1f s, %.1f positions/s, %.0f nps, %d threads%n", positions,
+                analysis.getNodes(), seconds, positions / seconds, analysis.getNodes() / seconds, threads);
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.fehinti.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event of a position analysed by BatchAnalysis, from parsing to the output line
+@Name("com.github.fehinti.BatchPosition")
+@Label("Batch Position")
+@Category({ "Chess", "Batch Analysis" })
+class BatchPositionEvent extends Event {
+
+    @Label("Position")
+    String fen;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Score")
+    int score;
+
+    @Label("Best Move")
+    String bestMove;
+}
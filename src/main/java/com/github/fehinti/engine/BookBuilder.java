@@ -0,0 +1,258 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.piece.San;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * Builds a Polyglot book from PGN games in constant memory. Every position of the first plies of
+ * a game gives a (key, move, result) record; records are collected in a fixed size buffer which
+ * is sorted and written as an aggregated run file (key, move, wins, draws, losses) whenever it is
+ * full. build() merges the sorted runs, adds up the counts of every (key, move) and writes the
+ * book: moves played in fewer than minGames games or never scoring are left out, the weight of a
+ * move is 2 * wins + draws from the mover's side, scaled per position to fit 16 bits.
+ * Games without a result (*) or with a move that does not parse are skipped from that move on.
+ */
+public class BookBuilder {
+
+    static final int DEFAULT_MAX_PLY = 30;
+    static final int DEFAULT_RUN_ENTRIES = 1 << 20; // 16 MB of buffer
+    static final int LOSS = 0, DRAW = 1, WIN = 2; // result from the mover's side, 2 bits
+    static final int MAX_WEIGHT = 0xffff;
+
+    private final long[] random64;
+    private final int maxPly;
+    private final int minGames;
+    private final Path tmpDir;
+    private final long[] keys;
+    private final long[] values; // polyglot move << 2 | result
+    private int size;
+    private final List<Path> runs = new ArrayList<>();
+    private long games, skipped, records;
+
+    /**
+     * @param random64   the Polyglot constants, see PolyglotBook.random64
+     * @param runEntries records sorted in memory per run
+     * @param tmpDir     directory of the run files
+     */
+    public BookBuilder(long[] random64, int maxPly, int minGames, int runEntries, Path tmpDir) {
+        if (random64.length != PolyglotBook.RANDOM64_SIZE) throw new IllegalArgumentException("Invalid Random64 table");
+        if (maxPly <= 0 || minGames <= 0 || runEntries <= 0)
+            throw new IllegalArgumentException("Invalid book settings " + maxPly + " " + minGames + " " + runEntries);
+        this.random64 = random64;
+        this.maxPly = maxPly;
+        this.minGames = minGames;
+        this.tmpDir = tmpDir;
+        keys = new long[runEntries];
+        values = new long[runEntries];
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public void addAll(PgnReader pgn) throws IOException {
+        for (PgnReader.Game game = pgn.next(); game != null; game = pgn.next()) add(game);
+    }
+
+    public void add(PgnReader.Game game) throws IOException {
+        int white = switch (game.result()) {
+            case "1-0" -> WIN;
+            case "0-1" -> LOSS;
+            case "1/2-1/2" -> DRAW;
+            default -> -1;
+        };
+        if (white < 0) {
+            skipped++;
+            return;
+        }
+        String fen = game.tags().get("FEN");
+        Board120 board;
+        try {
+            board = (fen != null) ? FENParser.parseFENotation120(fen) : FENParser.startPos120();
+        } catch (RuntimeException e) {
+            skipped++;
+            return;
+        }
+        games++;
+        List<String> moves = game.moves();
+        for (int ply = 0; ply < Math.min(maxPly, moves.size()); ply++) {
+            int move;
+            try {
+                move = San.parse(board, moves.get(ply));
+            } catch (IllegalArgumentException e) {
+                skipped++;
+                return;
+            }
+            int result = board.getSideToMove() ? white : WIN - white;
+            record(PolyglotBook.key(board, random64), PolyglotBook.encode(move), result);
+            board.make(move);
+        }
+    }
+
+    private void record(long key, int move, int result) throws IOException {
+        if (size == keys.length) writeRun();
+        keys[size] = key;
+        values[size] = (move << 2) | result;
+        size++;
+        records++;
+    }
+
+    // sorts the buffer and writes it aggregated by (key, move)
+    private void writeRun() throws IOException {
+        RunSort.sort(keys, values, size);
+        Path run = (tmpDir != null) ? Files.createTempFile(tmpDir, "book", ".run") : Files.createTempFile("book", ".run");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            int i = 0;
+            while (i < size) {
+                long key = keys[i];
+                long move = values[i] >>> 2;
+                int[] counts = new int[3];
+                for (; i < size && keys[i] == key && values[i] >>> 2 == move; i++) counts[(int) (values[i] & 3)]++;
+                out.writeLong(key);
+                out.writeShort((int) move);
+                out.writeInt(counts[WIN]);
+                out.writeInt(counts[DRAW]);
+                out.writeInt(counts[LOSS]);
+            }
+        }
+        size = 0;
+    }
+
+    // one run file, positioned on its next aggregated record
+    private static final class Run implements AutoCloseable {
+        final DataInputStream in;
+        long key;
+        int move, wins, draws, losses;
+
+        Run(Path path) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                key = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            move = in.readUnsignedShort();
+            wins = in.readInt();
+            draws = in.readInt();
+            losses = in.readInt();
+            return true;
+        }
+
+        int compareTo(Run other) {
+            int c = Long.compareUnsigned(key, other.key);
+            return (c != 0) ? c : Integer.compare(move, other.move);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * merges the runs into the book, the run files are deleted
+     *
+     * @return number of book entries
+     */
+    public long build(Path book) throws IOException {
+        if (size > 0) writeRun();
+        PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(1, runs.size()), Run::compareTo);
+        List<Run> open = new ArrayList<>(runs.size());
+        long entries = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(book), 1 << 16))) {
+            for (Path path : runs) {
+                Run run = new Run(path);
+                open.add(run);
+                if (run.advance()) queue.add(run);
+            }
+            List<long[]> position = new ArrayList<>(); // {move, wins, draws, losses} of the current key
+            long key = 0;
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                if (!position.isEmpty() && run.key != key) {
+                    entries += writePosition(out, key, position);
+                    position.clear();
+                }
+                key = run.key;
+                long[] last = position.isEmpty() ? null : position.get(position.size() - 1);
+                if (last != null && last[0] == run.move) {
+                    last[1] += run.wins;
+                    last[2] += run.draws;
+                    last[3] += run.losses;
+                } else position.add(new long[] { run.move, run.wins, run.draws, run.losses });
+                if (run.advance()) queue.add(run);
+            }
+            if (!position.isEmpty()) entries += writePosition(out, key, position);
+        } finally {
+            for (Run run : open) run.close();
+            for (Path path : runs) Files.deleteIfExists(path);
+            runs.clear();
+        }
+        return entries;
+    }
+
+    private int writePosition(DataOutputStream out, long key, List<long[]> moves) throws IOException {
+        long max = 0;
+        List<long[]> kept = new ArrayList<>(moves.size());
+        for (long[] m : moves) {
+            long weight = 2 * m[1] + m[2];
+            if (m[1] + m[2] + m[3] < minGames || weight == 0) continue;
+            kept.add(new long[] { m[0], weight });
+            max = Math.max(max, weight);
+        }
+        kept.sort((a, b) -> Long.compare(b[1], a[1]));
+        for (long[] m : kept) {
+            long weight = (max > MAX_WEIGHT) ? Math.max(1, m[1] * MAX_WEIGHT / max) : m[1];
+            out.writeLong(key);
+            out.writeShort((int) m[0]);
+            out.writeShort((int) weight);
+            out.writeInt(0); // learn
+        }
+        return kept.size();
+    }
+
+    // args: output book, max ply, min games, pgn files..
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("usage: BookBuilder <book.bin> <max ply> <min games> <pgn>...");
+            return;
+        }
+        BookBuilder builder = new BookBuilder(PolyglotBook.random64(), Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                DEFAULT_RUN_ENTRIES, null);
+        long st = System.nanoTime();
+        for (int i = 3; i < args.length; i++) {
+            try (PgnReader pgn = new PgnReader(Files.newBufferedReader(Paths.get(args[i])))) {
+                builder.addAll(pgn);
+            }
+        }
+        long entries = builder.build(Paths.get(args[0]));
+        System.out.printf("%d games, %d skipped, %d positions, %d book entries, %.1f s%n", builder.getGames(),
+                builder.getSkipped(), builder.getRecords(), entries, (System.nanoTime() - st) / 1e9);
+    }
+}
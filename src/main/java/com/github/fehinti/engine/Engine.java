@@ -1,17 +1,18 @@
 package com.github.fehinti.engine;
 
 import com.github.fehinti.board.Board120;
-import com.github.fehinti.board.Board120Utils;
 import com.github.fehinti.board.FENParser;
 import com.github.fehinti.piece.MoveGenerator;
 import com.github.fehinti.piece.VectorAttack120;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
 
-import static com.github.fehinti.board.Board120.KING_SQ;
 import static com.github.fehinti.board.Board120Utils.*;
+import static com.github.fehinti.piece.Move.printMove;
 
 public class Engine {
 
@@ -26,14 +27,125 @@ public class Engine {
     private static final byte SIMPLE = 1;
     private static final byte ADV = 0;
 
+    private static final int EVAL_CACHE_ENTRIES = 1 << 18;
+
     private final Board120 board;
-    private HashMap<Long, Integer> previousEval;
-    private final Evaluator evaluator;
+    private final EvalCache evaluator; // previous evaluations, keyed on the zobrist key
+    private final Search searcher;
+    private Search.Result lastResult; // of the last search on our clock, its pv predicts the reply
+    private Thread ponderThread;
+    private int ponderMove;
+    private volatile Search.Result ponderResult;
+    private PolyglotBook book; // may be null
+    private final Random bookRandom = new Random();
 
     public Engine(String fen, int eval) {
         this.board = FENParser.parseFENotation120(fen);
-        previousEval = new HashMap<>();
-        evaluator = (eval == 0) ? PESTO.getInstance() : SimpleEvaluator.getInstance();
+        evaluator = new EvalCache((eval == 0) ? PESTO.getInstance() : SimpleEvaluator.getInstance(),
+                EVAL_CACHE_ENTRIES);
+        searcher = new Search(evaluator);
+    }
+
+    /**
+     * plays the book move when the position is in the book, otherwise searches the current position
+     * on the clock, times in milliseconds as in the UCI go command
+     *
+     * @param movesToGo moves to the next time control, 0 for sudden death
+     */
+    public Search.Result go(long wtime, long btime, long winc, long binc, int movesToGo) {
+        if (ponderThread != null) throw new IllegalStateException("Pondering on " + printMove(ponderMove));
+        int bookMove = (book != null) ? book.pick(board, bookRandom) : 0;
+        if (bookMove != 0) {
+            lastResult = new Search.Result(bookMove, 0, 0, 0, 0, new int[] { bookMove });
+            return lastResult;
+        }
+        TimeManager time = TimeManager.forClock(board.getSideToMove(), wtime, btime, winc, binc, movesToGo);
+        lastResult = searcher.search(board, Search.Limits.time(time));
+        return lastResult;
+    }
+
+    // opening book consulted by go, null for none
+    public void setBook(PolyglotBook book) {
+        this.book = book;
+    }
+
+    /**
+     * analysis of the current position, the best multiPv moves with their lines
+     *
+     * @param iteration receives the lines of every completed depth, best first, may be null
+     */
+    public List<Search.Result> analyse(Search.Limits limits, int multiPv, Consumer<List<Search.Result>> iteration) {
+        if (ponderThread != null) throw new IllegalStateException("Pondering on " + printMove(ponderMove));
+        List<Search.Result> lines = searcher.search(board, limits, multiPv, iteration);
+        lastResult = lines.get(0);
+        return lines;
+    }
+
+    /**
+     * counters of the running or last search
+     */
+    public SearchStats.Snapshot getStats() {
+        return searcher.getStats();
+    }
+
+    // plays a move on the game board, ours or the opponent's when it was not pondered on
+    public void play(int move) {
+        if (ponderThread != null) throw new IllegalStateException("Pondering on " + printMove(ponderMove));
+        board.make(move);
+    }
+
+    /**
+     * @return expected reply to our last move, 0 if the last search has none
+     */
+    public int getPonderMove() {
+        return (lastResult != null && lastResult.pv().length > 1) ? lastResult.pv()[1] : 0;
+    }
+
+    /**
+     * plays the expected reply on the board and searches it without a clock on a background thread
+     * until ponderHit or ponderMiss. The rest of the last principal variation is searched first.
+     */
+    public void ponder(int reply) {
+        if (ponderThread != null) throw new IllegalStateException("Pondering on " + printMove(ponderMove));
+        int[] pv = (lastResult != null) ? lastResult.pv() : new int[0];
+        int[] hint = (pv.length > 2 && pv[1] == reply) ? Arrays.copyOfRange(pv, 2, pv.length) : new int[0];
+        board.make(reply);
+        ponderMove = reply;
+        ponderResult = null;
+        searcher.start(new Search.Limits(Search.MAX_PLY, 0), hint);
+        ponderThread = new Thread(() -> ponderResult = searcher.run(board), "ponder");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+    /**
+     * the opponent played the expected reply: the running search goes on, from now on on our clock
+     */
+    public Search.Result ponderHit(long wtime, long btime, long winc, long binc, int movesToGo)
+            throws InterruptedException {
+        if (ponderThread == null) throw new IllegalStateException("Not pondering");
+        searcher.ponderHit(TimeManager.forClock(board.getSideToMove(), wtime, btime, winc, binc, movesToGo));
+        ponderThread.join();
+        ponderThread = null;
+        lastResult = ponderResult;
+        return lastResult;
+    }
+
+    /**
+     * the opponent played another move: the search is stopped and the expected reply taken back,
+     * the actual move is then given to play
+     */
+    public void ponderMiss() throws InterruptedException {
+        if (ponderThread == null) throw new IllegalStateException("Not pondering");
+        searcher.stop();
+        ponderThread.join();
+        ponderThread = null;
+        board.unmake(ponderMove);
+        lastResult = null;
+    }
+
+    public String getPosition() {
+        return FENParser.getFENotation(board);
     }
 
     public int search() {
@@ -126,60 +238,10 @@ public class Engine {
     }
 
     private boolean isDrawByThreefold() {
-        // todo
-        return false;
+        return board.isThreefoldRepetition();
     }
 
     private boolean drawByInsufficientMaterial() {
-        int[] wList = board.getWhitePieceList();
-        int[] bList = board.getBlackPieceList();
-
-        // [N, B, PRQ] count the number of knights, bishop and other pieces on the board
-        // estimates draws based on piece  combinations;
-        int[] wPc = new int[3];
-        int[] bPc = new int[3];
-        int bSquare = 0;
-        int wSquare = 0;
-
-       for (int i = 0; i < 16; i++) {
-            // return early, checkmate possible with (pawn, rook and queen) remaining
-            if (wPc[2] > 2 || bPc[2] > 2) return false;
-            int wp = (wList[i] >> 8) & 0xff;
-            int bp = (bList[i] >> 8) & 0xff;
-            if (wp == WKNIGHT) wPc[0]++;
-            else if (wp == WBISHOP) {
-                wPc[1]++;
-                wSquare = wList[i] & 0xff;
-            }
-            else wPc[2]++;
-            if (bp == -BKNIGHT) bPc[0]++;
-            else if (bp == -BBISHOP) {
-                bPc[1]++;
-                bSquare = bList[i] & 0xff;
-            }
-            else bPc[2]++;
-        }
-        // King vs. king
-        boolean  onlyBlackKing = bPc[0] == 0 && bPc[1] == 0 && bPc[2] == 1;
-        boolean  onlyWhiteKing = wPc[0] == 0 && wPc[1] == 0 && wPc[2] == 1;
-        boolean  whiteKingKnight = (wPc[0] == 1 && wPc[1] == 0 && wPc[2] == 1);
-        boolean  blackKingKnight = (bPc[0] == 1 && bPc[1] == 0 && bPc[2] == 1);
-        boolean  whiteKingBishop = (wPc[0] == 0 && wPc[1] == 1 && wPc[2] == 1);
-        boolean  blackKingBishop = (bPc[0] == 0 && bPc[1] == 1 && bPc[2] == 1);
-
-        if (onlyWhiteKing &&  onlyBlackKing) return true; // King vs king
-        else if ( whiteKingKnight &&  onlyBlackKing)  return true; // KN vs k
-        else if ( blackKingKnight &&  onlyWhiteKing)  return true; // kn vs K
-        else if ( whiteKingBishop &&  onlyBlackKing)  return true;
-        else if ( blackKingBishop &&  onlyWhiteKing)  return true;
-        else if ( whiteKingBishop && blackKingBishop) {
-            // check if the bishops are of the same color => stalemate
-            for (int j = 0; j < KING_SQ; j++) {
-                if (((bList[j] >> 8) & 0xff) == -BBISHOP) bSquare  = bList[j] & 0xff;
-                if (((wList[j] >> 8) & 0xff) == WBISHOP)  wSquare  = wList[j] & 0xff;
-            }
-            return Board120Utils.COLOR[bSquare] == Board120Utils.COLOR[wSquare]; // same color = draw
-        }
-        return false;
+        return board.hasInsufficientMaterial();
     }
 }
@@ -0,0 +1,87 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Small, lossy, direct mapped cache of evaluations keyed on the zobrist key of Board120.
+ * It wraps any Evaluator, a position found in the cache is not evaluated again.
+ * Every entry is 2 longs in one flat array: [key ^ score bits, score bits]. A slot torn by two
+ * threads writing at the same time no longer XORs back to the key and reads as a miss, so the
+ * cache is shared between search threads without locks. A newer position simply overwrites
+ * the slot (always replace).
+ */
+public class EvalCache implements Evaluator {
+
+    static final int ENTRY_SIZE = 2;
+
+    private final Evaluator evaluator;
+    private final long[] table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param evaluator evaluator called on a miss
+     * @param entries   number of entries, rounded down to a power of two
+     */
+    public EvalCache(Evaluator evaluator, int entries) {
+        if (evaluator == null) throw new IllegalArgumentException("Null evaluator");
+        if (entries <= 0) throw new IllegalArgumentException("Eval cache needs at least one entry");
+        int size = Integer.highestOneBit(entries);
+        this.evaluator = evaluator;
+        table = new long[size * ENTRY_SIZE];
+        mask = size - 1;
+    }
+
+    public double evaluate(Board120 board) {
+        long key = board.getZobristKey();
+        int i = ((int) key & mask) * ENTRY_SIZE;
+        long bits = table[i + 1];
+        if ((table[i] ^ bits) == key && (key != 0 || bits != 0)) {
+            hits.increment();
+            return Double.longBitsToDouble(bits);
+        }
+        misses.increment();
+        double score = evaluator.evaluate(board);
+        bits = Double.doubleToRawLongBits(score);
+        table[i + 1] = bits;
+        table[i] = key ^ bits;
+        return score;
+    }
+
+    public void clear() {
+        if (JfrEvents.ENABLED) {
+            EvalCacheClearEvent event = new EvalCacheClearEvent();
+            if (event.shouldCommit()) {
+                event.entries = mask + 1;
+                event.hits = hits.sum();
+                event.misses = misses.sum();
+                event.commit();
+            }
+        }
+        Arrays.fill(table, 0L);
+        hits.reset();
+        misses.reset();
+    }
+
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long probes = h + misses.sum();
+        return (probes == 0) ? 0 : (double) h / probes;
+    }
+}
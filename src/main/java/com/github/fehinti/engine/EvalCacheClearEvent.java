@@ -0,0 +1,22 @@
+package com.github.fehinti.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event of an eval cache cleared, with the counters it had, recorded when JfrEvents.ENABLED
+@Name("com.github.fehinti.EvalCacheClear")
+@Label("Eval Cache Clear")
+@Category({ "Chess", "Search" })
+class EvalCacheClearEvent extends Event {
+
+    @Label("Entries")
+    int entries;
+
+    @Label("Hits")
+    long hits;
+
+    @Label("Misses")
+    long misses;
+}
@@ -3,5 +3,8 @@ package com.github.fehinti.engine;
 import com.github.fehinti.board.Board120;
 
 public interface Evaluator {
+    /**
+     * @return score in centipawns from white's point of view
+     */
     double evaluate(Board120 board);
 }
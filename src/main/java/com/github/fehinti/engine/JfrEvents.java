@@ -0,0 +1,15 @@
+package com.github.fehinti.engine;
+
+/*
+ * Switch of the JFR events of the engine and perft packages. Events are only created when the JVM
+ * runs with -Dengine.jfr=true: ENABLED is a static final so the guarded code is dropped otherwise.
+ * They are then recorded as any JDK event by a recording started with -XX:StartFlightRecording or
+ * from JMC.
+ */
+public final class JfrEvents {
+
+    public static final boolean ENABLED = Boolean.getBoolean("engine.jfr");
+
+    private JfrEvents() {
+    }
+}
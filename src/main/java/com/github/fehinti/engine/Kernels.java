@@ -0,0 +1,62 @@
+package com.github.fehinti.engine;
+
+/*
+ * Hot loops of evaluation: piece-square table sums and NNUE accumulator updates and output.
+ * Every kernel has a scalar version here and a SIMD version in VectorKernels, the SIMD version is
+ * used when the jdk.incubator.vector module is resolved (run with --add-modules jdk.incubator.vector)
+ * unless -Dengine.scalar=true is set. Both versions produce exactly the same integers.
+ * VectorKernels is only loaded when it is used, so the scalar path runs without the module.
+ */
+public class Kernels {
+
+    public static final boolean VECTOR = !Boolean.getBoolean("engine.scalar")
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    public static void addColumn(short[] acc, int offset, short[] weights, int feature, int hidden) {
+        if (VECTOR) VectorKernels.addColumn(acc, offset, weights, feature * hidden, hidden);
+        else addColumnScalar(acc, offset, weights, feature * hidden, hidden);
+    }
+
+    public static void subColumn(short[] acc, int offset, short[] weights, int feature, int hidden) {
+        if (VECTOR) VectorKernels.subColumn(acc, offset, weights, feature * hidden, hidden);
+        else subColumnScalar(acc, offset, weights, feature * hidden, hidden);
+    }
+
+    // clipped ReLU (0..NNUE.QA) of the accumulator dotted with the output weights
+    public static int creluDot(short[] acc, int offset, short[] weights, int wOffset, int hidden) {
+        if (VECTOR) return VectorKernels.creluDot(acc, offset, weights, wOffset, hidden);
+        return creluDotScalar(acc, offset, weights, wOffset, hidden);
+    }
+
+    /**
+     * @param table      value of every piece list entry at entry + 1, table[0] is 0 so OFF_BOARD adds nothing
+     * @param pieceLists piece list entries to add up
+     */
+    public static int pieceListSum(int[] table, int[] pieceLists) {
+        if (VECTOR) return VectorKernels.pieceListSum(table, pieceLists);
+        return pieceListSumScalar(table, pieceLists);
+    }
+
+    static void addColumnScalar(short[] acc, int offset, short[] weights, int column, int hidden) {
+        for (int i = 0; i < hidden; i++) acc[offset + i] += weights[column + i];
+    }
+
+    static void subColumnScalar(short[] acc, int offset, short[] weights, int column, int hidden) {
+        for (int i = 0; i < hidden; i++) acc[offset + i] -= weights[column + i];
+    }
+
+    static int creluDotScalar(short[] acc, int offset, short[] weights, int wOffset, int hidden) {
+        int sum = 0;
+        for (int i = 0; i < hidden; i++) {
+            int v = Math.min(Math.max(acc[offset + i], 0), NNUE.QA);
+            sum += v * weights[wOffset + i];
+        }
+        return sum;
+    }
+
+    static int pieceListSumScalar(int[] table, int[] pieceLists) {
+        int sum = 0;
+        for (int entry : pieceLists) sum += table[entry + 1];
+        return sum;
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.board.Material;
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Weights of a small efficiently updatable neural network (768 -> 2 x hidden -> 1).
+ * Inputs are the 768 (12 piece types x 64 squares) piece-square features, seen from both
+ * perspectives: white's view indexes P..K then p..k on the board as it is, black's view swaps the
+ * colors and mirrors the squares (sq ^ 56). Each perspective has its own accumulator of hidden
+ * int16 values (feature bias + one weight column per piece on the board), see NNUEAccumulator.
+ * Output = clipped ReLU(side to move) . w[0..hidden) + clipped ReLU(opponent) . w[hidden..2 hidden) + bias,
+ * computed with integers only and scaled to centipawns.
+ *
+ * Binary file layout, little endian:
+ *   int32  hidden size
+ *   int16  feature weights [768][hidden] (one column of hidden values per feature)
+ *   int16  feature bias    [hidden]
+ *   int16  output weights  [2 * hidden]
+ *   int32  output bias
+ */
+public class NNUE {
+
+    public static final int INPUTS = 768;
+    static final int QA = 255; // clipped ReLU ceiling, accumulator quantization
+    static final int QB = 64; // output weight quantization
+    static final int SCALE = 400; // network output to centipawns
+
+    final int hidden;
+    final short[] featureWeights;
+    final short[] featureBias;
+    final short[] outputWeights;
+    final int outputBias;
+
+    NNUE(int hidden, short[] featureWeights, short[] featureBias, short[] outputWeights, int outputBias) {
+        if (featureWeights.length != INPUTS * hidden || featureBias.length != hidden
+                || outputWeights.length != 2 * hidden) throw new IllegalArgumentException("Invalid network shape");
+        this.hidden = hidden;
+        this.featureWeights = featureWeights;
+        this.featureBias = featureBias;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    public int getHidden() {
+        return hidden;
+    }
+
+    public static NNUE load(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            DataInputStream data = new DataInputStream(in);
+            int hidden = Integer.reverseBytes(data.readInt());
+            if (hidden <= 0 || hidden > 4096) throw new IOException("Invalid hidden size " + hidden + " in " + path);
+            short[] featureWeights = readShorts(data, INPUTS * hidden);
+            short[] featureBias = readShorts(data, hidden);
+            short[] outputWeights = readShorts(data, 2 * hidden);
+            int outputBias = Integer.reverseBytes(data.readInt());
+            return new NNUE(hidden, featureWeights, featureBias, outputWeights, outputBias);
+        }
+    }
+
+    public void save(Path path) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(Integer.reverseBytes(hidden));
+            writeShorts(data, featureWeights);
+            writeShorts(data, featureBias);
+            writeShorts(data, outputWeights);
+            data.writeInt(Integer.reverseBytes(outputBias));
+            data.flush();
+        }
+    }
+
+    private static short[] readShorts(DataInputStream in, int n) throws IOException {
+        short[] values = new short[n];
+        for (int i = 0; i < n; i++) values[i] = Short.reverseBytes(in.readShort());
+        return values;
+    }
+
+    private static void writeShorts(DataOutputStream out, short[] values) throws IOException {
+        for (short v : values) out.writeShort(Short.reverseBytes(v));
+    }
+
+    /**
+     * untrained network with small random weights, for benchmarks and tests
+     */
+    public static NNUE random(int hidden, long seed) {
+        Random random = new Random(seed);
+        short[] featureWeights = new short[INPUTS * hidden];
+        short[] featureBias = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        for (int i = 0; i < featureWeights.length; i++) featureWeights[i] = (short) (random.nextInt(65) - 32);
+        for (int i = 0; i < hidden; i++) featureBias[i] = (short) random.nextInt(64);
+        for (int i = 0; i < outputWeights.length; i++) outputWeights[i] = (short) (random.nextInt(129) - 64);
+        return new NNUE(hidden, featureWeights, featureBias, outputWeights, 0);
+    }
+
+    /**
+     * @param white  true for white's perspective
+     * @param piece  piece value on the board
+     * @param square 0..63
+     * @return 0..767 feature index
+     */
+    static int featureIndex(boolean white, byte piece, int square) {
+        int index = Material.index(piece);
+        if (white) return index * 64 + square;
+        index = (index < 6) ? index + 6 : index - 6; // own pieces come first
+        return index * 64 + (square ^ 56);
+    }
+
+    /**
+     * @param acc   both accumulators, white's at offset 0 and black's at offset hidden
+     * @param white side to move
+     * @return score in centipawns from white's point of view
+     */
+    int output(short[] acc, int offset, boolean white) {
+        int us = white ? offset : offset + hidden;
+        int them = white ? offset + hidden : offset;
+        long sum = (long) Kernels.creluDot(acc, us, outputWeights, 0, hidden)
+                + Kernels.creluDot(acc, them, outputWeights, hidden, hidden) + outputBias;
+        int score = (int) (sum * SCALE / (QA * QB));
+        return white ? score : -score;
+    }
+
+    // evaluates every leaf of a fixed depth tree
+    static long walk(Board120 board, int depth, Evaluator evaluator) {
+        if (depth == 0) {
+            if (evaluator != null) evaluator.evaluate(board);
+            return 1;
+        }
+        long nodes = 0;
+        List<Integer> moves = MoveGenerator.generatePseudoLegal(board);
+        for (int move : moves) {
+            board.make(move);
+            if (!VectorAttack120.isKingInCheck(board)) nodes += walk(board, depth - 1, evaluator);
+            board.unmake(move);
+        }
+        return nodes;
+    }
+
+    static long time(Board120 board, int depth, Evaluator evaluator) {
+        long st = System.nanoTime();
+        walk(board, depth, evaluator);
+        return System.nanoTime() - st;
+    }
+
+    // args: [weights file] [depth], compares evaluations per second with PESTO
+    public static void main(String[] args) throws IOException {
+        NNUE network = (args.length > 0) ? load(Paths.get(args[0])) : random(256, 1);
+        int depth = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        Board120 board = FENParser.parseFENotation120(
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        long leaves = walk(board, depth, null);
+        Board120 copy = new Board120(board);
+        NNUEAccumulator warm = NNUEAccumulator.attach(network, copy);
+        for (int warmup = 0; warmup < 2; warmup++) {
+            time(board, depth - 1, null);
+            time(board, depth - 1, PESTO.getInstance());
+            time(copy, depth - 1, warm);
+        }
+        long base = time(board, depth, null);
+        long pesto = time(board, depth, PESTO.getInstance());
+        NNUEAccumulator accumulator = NNUEAccumulator.attach(network, board);
+        long nnue = time(board, depth, accumulator);
+        board.setPieceObserver(null);
+
+        System.out.printf("leaves %d, tree walk alone %d ms%n", leaves, base / 1_000_000);
+        System.out.printf("PESTO    %d ms\t%.0f evals/s%n", pesto / 1_000_000, leaves * 1e9 / Math.max(1, pesto - base));
+        System.out.printf("NNUE %d  %d ms\t%.0f evals/s (incl. accumulator updates)%n", network.hidden,
+                nnue / 1_000_000, leaves * 1e9 / Math.max(1, nnue - base));
+    }
+}
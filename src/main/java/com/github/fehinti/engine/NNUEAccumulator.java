@@ -0,0 +1,91 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.PieceObserver;
+
+/*
+ * Accumulators of an NNUE network for a single board, kept as a stack with one entry per ply.
+ * Attached to a Board120 as its PieceObserver: make pushes a copy of the current entry and adds or
+ * subtracts the weight column of every piece that moved, unmake pops the entry, so nothing is
+ * recomputed from scratch during search. Evaluation reads the top entry and allocates nothing.
+ * One instance per board (and so per search thread), it is not thread safe.
+ */
+public class NNUEAccumulator implements PieceObserver, Evaluator {
+
+    static final int MAX_PLY = 512; // same as the move history of Board120
+
+    private final NNUE network;
+    private final Board120 board;
+    private final int size; // both perspectives, white then black
+    private final short[] stack;
+    private int top; // offset of the current entry
+
+    private NNUEAccumulator(NNUE network, Board120 board) {
+        this.network = network;
+        this.board = board;
+        size = 2 * network.hidden;
+        stack = new short[MAX_PLY * size];
+    }
+
+    /**
+     * @return an accumulator attached to board as its PieceObserver, refreshed from the board
+     */
+    public static NNUEAccumulator attach(NNUE network, Board120 board) {
+        NNUEAccumulator accumulator = new NNUEAccumulator(network, board);
+        board.setPieceObserver(accumulator);
+        return accumulator;
+    }
+
+    public void push() {
+        if (top + size >= stack.length) throw new IllegalStateException("NNUE accumulator stack overflow");
+        System.arraycopy(stack, top, stack, top + size, size);
+        top += size;
+    }
+
+    public void pop() {
+        top -= size;
+    }
+
+    public void add(byte piece, int square) {
+        int hidden = network.hidden;
+        Kernels.addColumn(stack, top, network.featureWeights, NNUE.featureIndex(true, piece, square), hidden);
+        Kernels.addColumn(stack, top + hidden, network.featureWeights, NNUE.featureIndex(false, piece, square), hidden);
+    }
+
+    public void remove(byte piece, int square) {
+        int hidden = network.hidden;
+        Kernels.subColumn(stack, top, network.featureWeights, NNUE.featureIndex(true, piece, square), hidden);
+        Kernels.subColumn(stack, top + hidden, network.featureWeights, NNUE.featureIndex(false, piece, square), hidden);
+    }
+
+    public void refresh(Board120 board) {
+        top = 0;
+        System.arraycopy(network.featureBias, 0, stack, 0, network.hidden);
+        System.arraycopy(network.featureBias, 0, stack, network.hidden, network.hidden);
+        for (int sq = 0; sq < 64; sq++) {
+            byte piece = board.getPieceOnSquare(Board120.getMailbox64Number(sq));
+            if (piece != 0) add(piece, sq);
+        }
+    }
+
+    /**
+     * @param board must be the board this accumulator is attached to
+     * @return score in centipawns from white's point of view
+     */
+    public double evaluate(Board120 board) {
+        if (board != this.board) throw new IllegalArgumentException("NNUE accumulator is attached to another board");
+        return network.output(stack, top, board.getSideToMove());
+    }
+
+    // number of entries pushed above the root
+    int ply() {
+        return top / size;
+    }
+
+    // copies the current entry, used to compare incremental updates against a refresh
+    short[] current() {
+        short[] copy = new short[size];
+        System.arraycopy(stack, top, copy, 0, size);
+        return copy;
+    }
+}
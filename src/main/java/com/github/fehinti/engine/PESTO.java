@@ -1,20 +1,40 @@
 package com.github.fehinti.engine;
 
 import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.Material;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.github.fehinti.board.Board120Utils.*;
 
 /***
  * Piece Square Tables Only
+ * The tables below are the defaults, a table file written by save (or TexelTuner) replaces them:
+ * plain text, '#' starts a comment, each name is followed by its values
+ *   MID_GAME_VAL 6 values (P, N, B, R, Q, K), END_GAME_VAL 6 values
+ *   PAWN_MID_GAME .. KING_END_GAME 64 values each, a8 first like the arrays in this file
  ***/
 public class PESTO implements Evaluator {
 
-    static final PESTO INSTANCE = new PESTO();
+    static final PESTO INSTANCE;
 
     public static PESTO getInstance() {
         return INSTANCE;
     }
 
+    static final int PAWN_TABLE_ENTRIES = 1 << 16;
+    // shared by every caller of the instance, see PawnHashTable for why no locking is needed
+    private final PawnHashTable pawnTable = new PawnHashTable(PAWN_TABLE_ENTRIES);
+
+    public PawnHashTable getPawnTable() {
+        return pawnTable;
+    }
+
     final static int[] MID_GAME_VAL =   { 82, 337, 365, 477, 1025, 0};
     final static int[] END_GAME_VAL    =   { 94, 281, 297, 512,  936,  0};
 
@@ -160,50 +180,191 @@ public class PESTO implements Evaluator {
             BISHOP_MID_GAME, ROOK_MID_GAME,
             QUEEN_MID_GAME, KING_MID_GAME, };
 
-    // determines how much each piece type contributes to calculating the game phase
-    final static int[] GAME_PHASE = { 0, 1, 1, 2, 4, 0, 0, 1, 1, 2, 4, 0};
-    final static int[][] MID_PHASE_TABLE = new int[PIECE_TYPE_COUNT][BOARD_SIZE];
-    final static int[][] END_PHASE_TABLE = new int[PIECE_TYPE_COUNT][BOARD_SIZE];
+    static final String[] PIECE_NAMES = { "PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING" };
+    static final int PIECES = PIECE_NAMES.length;
+    // row of the black pieces in the flat tables, white pieces use rows 0..5
+    static final int BLACK_ROW = PIECES;
+    // piece list entries are below 128 << 8 (black pieces are stored as 122..127), an entry's value
+    // is kept one slot up so OFF_BOARD (-1) reads the zero at index 0, see Kernels.pieceListSum
+    static final int LIST_TABLE_SIZE = (1 << 15) + 1;
+    // both piece lists of the board being evaluated, per thread as the instance is shared
+    private static final ThreadLocal<int[]> PIECE_LISTS = ThreadLocal.withInitial(() -> new int[2 * MAX_LEN_16]);
 
     static {
-        for (int i = WPAWN; i <= WKING; i++) {
+        INSTANCE = new PESTO(MID_GAME_VAL, END_GAME_VAL, MID_GAME_PESTO, END_GAME_PESTO);
+    }
+
+    /**
+     * folds piece values into the square tables, the tables are written from white's side with a8 first
+     * so white squares (a1 = 0) are mirrored and black squares are not
+     * @param flat receives 12 rows of 64, indexed by tableIndex
+     */
+    static void build(int[] values, int[][] tables, int[] flat) {
+        for (int pc = 0; pc < PIECES; pc++) {
             for (int sq = 0; sq < BOARD_SIZE; sq++) {
-                MID_PHASE_TABLE[i][sq] = MID_GAME_VAL[i - 1] + MID_GAME_PESTO[i - 1][sq];
-                END_PHASE_TABLE[i][sq] = END_GAME_VAL[i - 1] + END_GAME_PESTO[i - 1][sq];
                 // xor with 56 to mirror the position
-                MID_PHASE_TABLE[i + 5][sq] = MID_GAME_VAL[i - 1] + MID_GAME_PESTO[i - 1][sq ^ 56];
-                END_PHASE_TABLE[i + 5][sq] = END_GAME_VAL[i - 1] + END_GAME_PESTO[i - 1][sq ^ 56];
+                flat[pc * BOARD_SIZE + sq] = values[pc] + tables[pc][sq ^ 56];
+                flat[(BLACK_ROW + pc) * BOARD_SIZE + sq] = values[pc] + tables[pc][sq];
             }
         }
     }
 
-    public double evaluate(Board120 board) {
-        int[] mg = { 0, 0};
-        int[] eg = { 0, 0};
-        int phase = 0;
-
-        int[] white = board.getWhitePieceList();
-        int[] black = board.getBlackPieceList();
-        for (int i = 0; i < 16; i++) {
-            if (white[i] != OFF_BOARD) {
-                int pc = (white[i] >> 8) & 0xff;
-                int sq = Board120.getMailbox120Number(white[i] & 0xff);
-                mg[0] += MID_PHASE_TABLE[pc - 1][sq];
-                eg[0] += END_PHASE_TABLE[pc - 1][sq];
-                phase += GAME_PHASE[pc - 1];
+    private final int[] midGameVal;
+    private final int[] endGameVal;
+    private final int[][] midGameTables;
+    private final int[][] endGameTables;
+    private final int[] midFlat = new int[PIECE_TYPE_COUNT * BOARD_SIZE];
+    private final int[] endFlat = new int[PIECE_TYPE_COUNT * BOARD_SIZE];
+    // the flat tables indexed by piece list entry, black entries negated, summed by Kernels.pieceListSum
+    private final int[] midList = new int[LIST_TABLE_SIZE];
+    private final int[] endList = new int[LIST_TABLE_SIZE];
+
+    /**
+     * @param midGameVal    6 piece values
+     * @param endGameVal    6 piece values
+     * @param midGameTables 6 tables of 64 squares, a8 first
+     * @param endGameTables 6 tables of 64 squares, a8 first
+     */
+    public PESTO(int[] midGameVal, int[] endGameVal, int[][] midGameTables, int[][] endGameTables) {
+        if (midGameVal.length != PIECES || endGameVal.length != PIECES
+                || midGameTables.length != PIECES || endGameTables.length != PIECES)
+            throw new IllegalArgumentException("PESTO needs values and tables for " + PIECES + " pieces");
+        for (int pc = 0; pc < PIECES; pc++) {
+            if (midGameTables[pc].length != BOARD_SIZE || endGameTables[pc].length != BOARD_SIZE)
+                throw new IllegalArgumentException("Invalid square table for " + PIECE_NAMES[pc]);
+        }
+        this.midGameVal = midGameVal.clone();
+        this.endGameVal = endGameVal.clone();
+        this.midGameTables = new int[PIECES][];
+        this.endGameTables = new int[PIECES][];
+        for (int pc = 0; pc < PIECES; pc++) {
+            this.midGameTables[pc] = midGameTables[pc].clone();
+            this.endGameTables[pc] = endGameTables[pc].clone();
+        }
+        build(this.midGameVal, this.midGameTables, midFlat);
+        build(this.endGameVal, this.endGameTables, endFlat);
+        buildList(midFlat, midList);
+        buildList(endFlat, endList);
+    }
+
+    // every entry a piece list can hold gets the value of its flat table entry
+    private static void buildList(int[] flat, int[] list) {
+        for (int pc = WPAWN; pc <= WKING; pc++) {
+            for (int sq = 0; sq < BOARD_SIZE; sq++) {
+                int square = Board120.getMailbox64Number(sq);
+                int white = (pc << 8) | square, black = ((-BPAWN - pc + WPAWN) << 8) | square;
+                list[white + 1] = flat[tableIndex(white, true)];
+                list[black + 1] = -flat[tableIndex(black, false)];
+            }
+        }
+    }
+
+    public int[] getMidGameVal() {
+        return midGameVal.clone();
+    }
+
+    public int[] getEndGameVal() {
+        return endGameVal.clone();
+    }
+
+    public int[] getMidGameTable(int pc) {
+        return midGameTables[pc].clone();
+    }
+
+    public int[] getEndGameTable(int pc) {
+        return endGameTables[pc].clone();
+    }
+
+    public static PESTO load(Path path) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            for (String token : line.trim().split("\\s+")) if (!token.isEmpty()) tokens.add(token);
+        }
+        int[] midGameVal = null, endGameVal = null;
+        int[][] midGameTables = new int[PIECES][];
+        int[][] endGameTables = new int[PIECES][];
+        int i = 0;
+        try {
+            while (i < tokens.size()) {
+                String name = tokens.get(i++);
+                if (name.equals("MID_GAME_VAL")) midGameVal = readInts(tokens, i, PIECES);
+                else if (name.equals("END_GAME_VAL")) endGameVal = readInts(tokens, i, PIECES);
+                else {
+                    int pc = List.of(PIECE_NAMES).indexOf(name.substring(0, Math.max(0, name.indexOf('_'))));
+                    if (pc < 0) throw new IOException("Unknown table " + name + " in " + path);
+                    if (name.endsWith("_MID_GAME")) midGameTables[pc] = readInts(tokens, i, BOARD_SIZE);
+                    else if (name.endsWith("_END_GAME")) endGameTables[pc] = readInts(tokens, i, BOARD_SIZE);
+                    else throw new IOException("Unknown table " + name + " in " + path);
+                    i += BOARD_SIZE;
+                    continue;
+                }
+                i += PIECES;
             }
-            if (black[i] != OFF_BOARD) {
-                int pc = (black[i] >> 8) & 0xff;
-                int sq = Board120.getMailbox120Number(black[i] & 0xff);
-                mg[1] += MID_PHASE_TABLE[128 - pc - 1][sq];
-                eg[1] += END_PHASE_TABLE[128 - pc - 1][sq];
-                phase += GAME_PHASE[128 - pc - 1];
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IOException("Truncated or invalid table file " + path, e);
+        }
+        if (midGameVal == null || endGameVal == null) throw new IOException("Missing piece values in " + path);
+        for (int pc = 0; pc < PIECES; pc++) {
+            if (midGameTables[pc] == null || endGameTables[pc] == null)
+                throw new IOException("Missing " + PIECE_NAMES[pc] + " tables in " + path);
+        }
+        return new PESTO(midGameVal, endGameVal, midGameTables, endGameTables);
+    }
+
+    private static int[] readInts(List<String> tokens, int from, int n) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) values[i] = Integer.parseInt(tokens.get(from + i));
+        return values;
+    }
+
+    public void save(Path path, String comment) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            if (comment != null) for (String line : comment.split("\n")) out.println("# " + line);
+            out.println("MID_GAME_VAL " + join(midGameVal, 0, PIECES));
+            out.println("END_GAME_VAL " + join(endGameVal, 0, PIECES));
+            for (int pc = 0; pc < PIECES; pc++) {
+                writeTable(out, PIECE_NAMES[pc] + "_MID_GAME", midGameTables[pc]);
+                writeTable(out, PIECE_NAMES[pc] + "_END_GAME", endGameTables[pc]);
             }
+            if (out.checkError()) throw new IOException("Failed to write " + path);
         }
+    }
+
+    private static void writeTable(PrintWriter out, String name, int[] table) {
+        out.println(name);
+        for (int rank = 0; rank < 8; rank++) out.println("    " + join(table, rank * 8, 8));
+    }
 
+    private static String join(int[] values, int from, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < from + n; i++) sb.append(String.format("%5d", values[i]));
+        return sb.toString().trim();
+    }
+
+    /**
+     * @param piece entry of a piece list (piece << 8 | square 120)
+     * @param white true for an entry of the white piece list
+     * @return entry of the flat tables for that piece
+     */
+    static int tableIndex(int piece, boolean white) {
+        int pc = (piece >> 8) & 0xff;
+        int row = white ? pc - WPAWN : BLACK_ROW + (-BPAWN - pc);
+        return row * BOARD_SIZE + Board120.getMailbox120Number(piece & 0xff);
+    }
+
+    public double evaluate(Board120 board) {
+        // how much each piece type contributes to the game phase is looked up on the material key
+        int phase = Material.phase(board.getMaterialKey());
+        int[] lists = PIECE_LISTS.get();
+        board.copyPieceLists(lists);
+        int mg = Kernels.pieceListSum(midList, lists);
+        int eg = Kernels.pieceListSum(endList, lists);
         //int side = board.getSideToMove() ? 0 : 1; // BUGBUG TODO: likely cause of PESTO always being -ve
-        int midgame = mg[0] - mg[1];
-        int endgame = eg[0] - eg[1];
+        int pawns = PawnStructure.probe(board, pawnTable);
+        int midgame = mg + PawnStructure.midGame(pawns);
+        int endgame = eg + PawnStructure.endGame(pawns);
         int mgPhase = phase;
         mgPhase = Math.min(mgPhase, 24);
         int egPhase = 24 - mgPhase;
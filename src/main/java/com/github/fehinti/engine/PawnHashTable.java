@@ -0,0 +1,103 @@
+package com.github.fehinti.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Fixed size, direct mapped cache of pawn structure evaluations keyed on the pawn only
+ * zobrist key of Board120. Every entry is 5 longs in one flat array:
+ *   [check, score, passers, white attacks, black attacks]
+ * check is the key XORed with the 4 data words, so an entry torn by two threads writing the same
+ * slot fails the check on the next probe instead of returning wrong data. No locks are needed
+ * to share a table between search threads, the hit and miss counters are LongAdders for the same reason.
+ */
+public class PawnHashTable {
+
+    static final int ENTRY_SIZE = 5;
+    static final int CHECK = 0;
+    static final int SCORE = 1;
+    static final int PASSERS = 2;
+    static final int WHITE_ATTACKS = 3;
+    static final int BLACK_ATTACKS = 4;
+    // returned by probeScore on a miss, a packed score is a 32 bit value
+    static final long MISS = -1L;
+
+    final long[] table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param entries number of entries, rounded down to a power of two
+     */
+    public PawnHashTable(int entries) {
+        if (entries <= 0) throw new IllegalArgumentException("Pawn hash table needs at least one entry");
+        int size = Integer.highestOneBit(entries);
+        table = new long[size * ENTRY_SIZE];
+        mask = size - 1;
+    }
+
+    /**
+     * @param pawnKey key of the pawn structure
+     * @param entry   filled with the cached data on a hit
+     * @return true on a hit
+     */
+    public boolean probe(long pawnKey, PawnStructure.Entry entry) {
+        int i = ((int) pawnKey & mask) * ENTRY_SIZE;
+        long score = table[i + SCORE];
+        long passers = table[i + PASSERS];
+        long wAttacks = table[i + WHITE_ATTACKS];
+        long bAttacks = table[i + BLACK_ATTACKS];
+        if ((table[i + CHECK] ^ score ^ passers ^ wAttacks ^ bAttacks) != pawnKey) {
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        entry.set(pawnKey, (int) score, passers, wAttacks, bAttacks);
+        return true;
+    }
+
+    /**
+     * probe for the score only, nothing to fill
+     * @return the packed score as an unsigned 32 bit value, MISS on a miss
+     */
+    public long probeScore(long pawnKey) {
+        int i = ((int) pawnKey & mask) * ENTRY_SIZE;
+        long score = table[i + SCORE];
+        if ((table[i + CHECK] ^ score ^ table[i + PASSERS] ^ table[i + WHITE_ATTACKS] ^ table[i + BLACK_ATTACKS]) != pawnKey) {
+            misses.increment();
+            return MISS;
+        }
+        hits.increment();
+        return score & 0xffffffffL;
+    }
+
+    public void store(PawnStructure.Entry entry) {
+        int i = ((int) entry.key & mask) * ENTRY_SIZE;
+        long score = entry.score;
+        table[i + SCORE] = score;
+        table[i + PASSERS] = entry.passers;
+        table[i + WHITE_ATTACKS] = entry.whiteAttacks;
+        table[i + BLACK_ATTACKS] = entry.blackAttacks;
+        table[i + CHECK] = entry.key ^ score ^ entry.passers ^ entry.whiteAttacks ^ entry.blackAttacks;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        hits.reset();
+        misses.reset();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum(), probes = h + misses.sum();
+        return (probes == 0) ? 0 : (double) h / probes;
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+
+import java.util.List;
+
+import static com.github.fehinti.board.Board120Utils.*;
+
+/*
+ * Pawn structure terms: doubled, isolated and passed pawns. Pawns are collected into two 64 bit
+ * boards (bit 0 = a1, bit 63 = h8) so every term is a handful of mask operations. Pawn structure
+ * rarely changes between positions of a search, so results are cached in a PawnHashTable
+ * on the pawn key and most evaluations only pay for a probe.
+ * Scores are white minus black, middle game and end game packed in one int.
+ */
+public class PawnStructure {
+
+    static final int DOUBLED_MG  = -10;
+    static final int DOUBLED_EG  = -20;
+    static final int ISOLATED_MG = -10;
+    static final int ISOLATED_EG = -15;
+    // passed pawn bonus by relative rank (rank 2 = index 1 .. rank 7 = index 6)
+    static final int[] PASSED_MG = { 0,  5, 10, 15, 25, 40,  70, 0 };
+    static final int[] PASSED_EG = { 0, 10, 15, 25, 45, 75, 120, 0 };
+
+    static final long FILE_A_MASK = 0x0101010101010101L;
+    static final long FILE_H_MASK = FILE_A_MASK << 7;
+    static final long[] FILE_MASK = new long[FILE_H];
+    static final long[] ADJACENT_FILES = new long[FILE_H];
+    // squares in front of a pawn on its own and adjacent files, no enemy pawn there = passed
+    static final long[] WHITE_PASSED_MASK = new long[BOARD_SIZE];
+    static final long[] BLACK_PASSED_MASK = new long[BOARD_SIZE];
+
+    static {
+        for (int f = FILE_A; f < FILE_H; f++) FILE_MASK[f] = FILE_A_MASK << f;
+        for (int f = FILE_A; f < FILE_H; f++) {
+            ADJACENT_FILES[f] = ((f > FILE_A) ? FILE_MASK[f - 1] : 0L) | ((f < FILE_H - 1) ? FILE_MASK[f + 1] : 0L);
+        }
+        for (int sq = 0; sq < BOARD_SIZE; sq++) {
+            int rank = sq >> 3;
+            long files = FILE_MASK[sq & 7] | ADJACENT_FILES[sq & 7];
+            long above = (rank == 7) ? 0L : -1L << ((rank + 1) * 8);
+            long below = (rank == 0) ? 0L : -1L >>> ((8 - rank) * 8);
+            WHITE_PASSED_MASK[sq] = files & above;
+            BLACK_PASSED_MASK[sq] = files & below;
+        }
+    }
+
+    /**
+     * cached pawn structure of a single pawn key
+     */
+    public static final class Entry {
+        long key;
+        int score;
+        long passers; // passed pawns of both colors
+        long whiteAttacks;
+        long blackAttacks;
+
+        void set(long key, int score, long passers, long whiteAttacks, long blackAttacks) {
+            this.key = key;
+            this.score = score;
+            this.passers = passers;
+            this.whiteAttacks = whiteAttacks;
+            this.blackAttacks = blackAttacks;
+        }
+
+        public int getMidGame() {
+            return midGame(score);
+        }
+
+        public int getEndGame() {
+            return endGame(score);
+        }
+
+        public long getPassers() {
+            return passers;
+        }
+
+        public long getWhiteAttacks() {
+            return whiteAttacks;
+        }
+
+        public long getBlackAttacks() {
+            return blackAttacks;
+        }
+    }
+
+    static int pack(int mg, int eg) {
+        return (mg << 16) + eg;
+    }
+
+    public static int midGame(int score) {
+        return (score + 0x8000) >> 16;
+    }
+
+    public static int endGame(int score) {
+        return (short) score;
+    }
+
+    /**
+     * @param board position to evaluate
+     * @param table pawn hash table, probed first and filled on a miss
+     * @param entry receives the pawn structure of the board
+     * @return entry
+     */
+    public static Entry probe(Board120 board, PawnHashTable table, Entry entry) {
+        if (!table.probe(board.getPawnKey(), entry)) {
+            evaluate(board, entry);
+            table.store(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * the packed score only (see midGame and endGame), a hit does not allocate
+     * @param board position to evaluate
+     * @param table pawn hash table, probed first and filled on a miss
+     */
+    public static int probe(Board120 board, PawnHashTable table) {
+        long score = table.probeScore(board.getPawnKey());
+        if (score != PawnHashTable.MISS) return (int) score;
+        Entry entry = evaluate(board, new Entry());
+        table.store(entry);
+        return entry.score;
+    }
+
+    /**
+     * computes the pawn structure of the board without the table
+     */
+    public static Entry evaluate(Board120 board, Entry entry) {
+        long white = 0L, black = 0L;
+        int[] wList = board.getWhitePieceList();
+        int[] bList = board.getBlackPieceList();
+        for (int i = 0; i < MAX_LEN_16; i++) {
+            if (wList[i] != OFF_BOARD && ((wList[i] >> RANK_8) & 0xff) == WPAWN) {
+                white |= 1L << Board120.getMailbox120Number(wList[i] & 0xff);
+            }
+            if (bList[i] != OFF_BOARD && ((bList[i] >> RANK_8) & 0xff) == -BPAWN) {
+                black |= 1L << Board120.getMailbox120Number(bList[i] & 0xff);
+            }
+        }
+
+        int mg = 0, eg = 0;
+        for (int f = FILE_A; f < FILE_H; f++) {
+            int wCount = Long.bitCount(white & FILE_MASK[f]);
+            int bCount = Long.bitCount(black & FILE_MASK[f]);
+            if (wCount > 1) { mg += DOUBLED_MG * (wCount - 1); eg += DOUBLED_EG * (wCount - 1); }
+            if (bCount > 1) { mg -= DOUBLED_MG * (bCount - 1); eg -= DOUBLED_EG * (bCount - 1); }
+            if (wCount > 0 && (white & ADJACENT_FILES[f]) == 0) { mg += ISOLATED_MG * wCount; eg += ISOLATED_EG * wCount; }
+            if (bCount > 0 && (black & ADJACENT_FILES[f]) == 0) { mg -= ISOLATED_MG * bCount; eg -= ISOLATED_EG * bCount; }
+        }
+
+        long passers = 0L;
+        for (long pawns = white; pawns != 0; pawns &= pawns - 1) {
+            int sq = Long.numberOfTrailingZeros(pawns);
+            if ((WHITE_PASSED_MASK[sq] & black) == 0) {
+                passers |= 1L << sq;
+                mg += PASSED_MG[sq >> 3];
+                eg += PASSED_EG[sq >> 3];
+            }
+        }
+        for (long pawns = black; pawns != 0; pawns &= pawns - 1) {
+            int sq = Long.numberOfTrailingZeros(pawns);
+            if ((BLACK_PASSED_MASK[sq] & white) == 0) {
+                passers |= 1L << sq;
+                mg -= PASSED_MG[7 - (sq >> 3)];
+                eg -= PASSED_EG[7 - (sq >> 3)];
+            }
+        }
+
+        long whiteAttacks = ((white << 7) & ~FILE_H_MASK) | ((white << 9) & ~FILE_A_MASK);
+        long blackAttacks = ((black >>> 9) & ~FILE_H_MASK) | ((black >>> 7) & ~FILE_A_MASK);
+        entry.set(board.getPawnKey(), pack(mg, eg), passers, whiteAttacks, blackAttacks);
+        return entry;
+    }
+
+    // evaluates every leaf of a fixed depth tree and reports the pawn hash table's hit rate
+    static long walk(Board120 board, int depth, Evaluator evaluator) {
+        if (depth == 0) {
+            evaluator.evaluate(board);
+            return 1;
+        }
+        long nodes = 0;
+        List<Integer> moves = MoveGenerator.generatePseudoLegal(board);
+        for (int move : moves) {
+            board.make(move);
+            if (!VectorAttack120.isKingInCheck(board)) nodes += walk(board, depth - 1, evaluator);
+            board.unmake(move);
+        }
+        return nodes;
+    }
+
+    public static void main(String[] args) {
+        int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        String[] fens = {
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1" };
+        PESTO pesto = PESTO.getInstance();
+        for (String fen : fens) {
+            pesto.getPawnTable().clear();
+            long leaves = walk(FENParser.parseFENotation120(fen), depth, pesto);
+            PawnHashTable table = pesto.getPawnTable();
+            System.out.printf("%s%nleaves %d\thits %d\tmisses %d\thit rate %.2f%%%n", fen, leaves,
+                    table.getHits(), table.getMisses(), 100 * table.getHitRate());
+        }
+    }
+}
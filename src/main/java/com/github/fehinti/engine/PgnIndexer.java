@@ -0,0 +1,231 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.piece.San;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * Writes the PositionIndex of PGN files: every position of every game, start position included,
+ * gives a (key, game) record. Like BookBuilder the records go to a fixed size buffer that is
+ * sorted and written as a run file when full, and build() merges the runs into the index, so the
+ * memory used does not grow with the number of games. A position repeated in a game is kept once.
+ * A game is replayed up to its first move that does not parse, games with a FEN tag start there.
+ * Games longer than the history of a board are indexed up to Board120.INIT_BUFFER plies and
+ * counted as truncated.
+ */
+public class PgnIndexer {
+
+    static final int DEFAULT_RUN_ENTRIES = 1 << 21; // 32 MB of buffer
+
+    private final int maxPly;
+    private final Path tmpDir;
+    private final long[] keys;
+    private final long[] games;
+    private int size;
+    private final List<Path> pgnFiles = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private long indexed, skipped, truncated, records;
+
+    /**
+     * @param maxPly     plies indexed per game, 0 for whole games
+     * @param runEntries records sorted in memory per run
+     * @param tmpDir     directory of the run files, null for the default temporary directory
+     */
+    public PgnIndexer(int maxPly, int runEntries, Path tmpDir) {
+        if (maxPly < 0 || runEntries <= 0) throw new IllegalArgumentException("Invalid index settings " + maxPly + " " + runEntries);
+        this.maxPly = (maxPly == 0) ? Integer.MAX_VALUE : maxPly;
+        this.tmpDir = tmpDir;
+        keys = new long[runEntries];
+        games = new long[runEntries];
+    }
+
+    public long getGames() {
+        return indexed;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getTruncated() {
+        return truncated;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * indexes every game of a PGN file, read as ISO-8859-1 so game offsets are byte offsets
+     */
+    public void addFile(Path pgn) throws IOException {
+        if (pgnFiles.size() == PositionIndex.MAX_FILES) throw new IllegalStateException("Index of " + PositionIndex.MAX_FILES + " files is full");
+        int file = pgnFiles.size();
+        pgnFiles.add(pgn.toAbsolutePath());
+        try (PgnReader reader = new PgnReader(Files.newBufferedReader(pgn, StandardCharsets.ISO_8859_1))) {
+            for (PgnReader.Game game = reader.next(); game != null; game = reader.next()) {
+                add(game, PositionIndex.game(file, reader.getGameOffset()));
+            }
+        }
+    }
+
+    void add(PgnReader.Game game, long ref) throws IOException {
+        String fen = game.tags().get("FEN");
+        Board120 board;
+        try {
+            board = (fen != null) ? FENParser.parseFENotation120(fen) : FENParser.startPos120();
+        } catch (RuntimeException e) {
+            skipped++;
+            return;
+        }
+        indexed++;
+        record(PositionIndex.key(board), ref);
+        List<String> moves = game.moves();
+        int plies = Math.min(maxPly, moves.size());
+        if (plies > Board120.INIT_BUFFER) {
+            plies = Board120.INIT_BUFFER;
+            truncated++;
+        }
+        for (int ply = 0; ply < plies; ply++) {
+            try {
+                board.make(San.parse(board, moves.get(ply)));
+            } catch (RuntimeException e) {
+                skipped++;
+                return;
+            }
+            record(PositionIndex.key(board), ref);
+        }
+    }
+
+    private void record(long key, long game) throws IOException {
+        if (size == keys.length) writeRun();
+        keys[size] = key;
+        games[size] = game;
+        size++;
+        records++;
+    }
+
+    // sorts the buffer and writes it without repeated records
+    private void writeRun() throws IOException {
+        RunSort.sort(keys, games, size);
+        Path run = (tmpDir != null) ? Files.createTempFile(tmpDir, "index", ".run") : Files.createTempFile("index", ".run");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            for (int i = 0; i < size; i++) {
+                if (i > 0 && keys[i] == keys[i - 1] && games[i] == games[i - 1]) continue;
+                out.writeLong(keys[i]);
+                out.writeLong(games[i]);
+            }
+        }
+        size = 0;
+    }
+
+    // one run file, positioned on its next record
+    private static final class Run implements AutoCloseable {
+        final DataInputStream in;
+        long key, game;
+
+        Run(Path path) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                key = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            game = in.readLong();
+            return true;
+        }
+
+        int compareTo(Run other) {
+            int c = Long.compareUnsigned(key, other.key);
+            return (c != 0) ? c : Long.compareUnsigned(game, other.game);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * merges the runs into the index, the run files are deleted
+     *
+     * @return number of records of the index
+     */
+    public long build(Path index) throws IOException {
+        if (size > 0) writeRun();
+        PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(1, runs.size()), Run::compareTo);
+        List<Run> open = new ArrayList<>(runs.size());
+        long written = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index), 1 << 16))) {
+            writeHeader(out);
+            for (Path path : runs) {
+                Run run = new Run(path);
+                open.add(run);
+                if (run.advance()) queue.add(run);
+            }
+            long lastKey = 0, lastGame = -1;
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                if (run.key != lastKey || run.game != lastGame) {
+                    out.writeLong(run.key);
+                    out.writeLong(run.game);
+                    lastKey = run.key;
+                    lastGame = run.game;
+                    written++;
+                }
+                if (run.advance()) queue.add(run);
+            }
+        } finally {
+            for (Run run : open) run.close();
+            for (Path path : runs) Files.deleteIfExists(path);
+            runs.clear();
+        }
+        return written;
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        DataOutputStream names = new DataOutputStream(OutputStream.nullOutputStream()); // counts the bytes
+        for (Path pgn : pgnFiles) names.writeUTF(pgn.toString());
+        long header = Long.BYTES * 3 + Integer.BYTES + names.size();
+        long first = PositionIndex.align(header);
+        out.writeLong(PositionIndex.MAGIC);
+        out.writeLong(PositionIndex.fingerprint());
+        out.writeLong(first);
+        out.writeInt(pgnFiles.size());
+        for (Path pgn : pgnFiles) out.writeUTF(pgn.toString());
+        for (long i = header; i < first; i++) out.writeByte(0);
+    }
+
+    // args: index, max ply (0 for whole games), pgn files..
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: PgnIndexer <index> <max ply> <pgn>...");
+            return;
+        }
+        PgnIndexer indexer = new PgnIndexer(Integer.parseInt(args[1]), DEFAULT_RUN_ENTRIES, null);
+        long st = System.nanoTime();
+        for (int i = 2; i < args.length; i++) indexer.addFile(Paths.get(args[i]));
+        long written = indexer.build(Paths.get(args[0]));
+        System.out.printf("%d games, %d skipped, %d truncated, %d positions, %d records, %.1f s%n", indexer.getGames(),
+                indexer.getSkipped(), indexer.getTruncated(), indexer.getRecords(), written, (System.nanoTime() - st) / 1e9);
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.fehinti.engine;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Streaming PGN reader, one game at a time so archives of any size are read in constant memory.
+ * Keeps the tag pairs and the main line as SAN tokens; comments ({..} and ; to the end of the
+ * line), variations (nested (..)), NAGs ($n), move numbers (12. 12...) and escape lines (%) are
+ * dropped. A game ends at its result token (1-0, 0-1, 1/2-1/2, *), or at the tags of the next
+ * game when the result is missing.
+ * Offsets count the characters read, they are byte offsets for a single byte charset: read PGN
+ * (ISO-8859-1 by the standard) as ISO_8859_1 to seek to a game later.
+ */
+public class PgnReader implements AutoCloseable {
+
+    /**
+     * @param result 1-0, 0-1, 1/2-1/2 or *
+     */
+    public record Game(Map<String, String> tags, List<String> moves, String result) {
+    }
+
+    private final Reader in;
+    private final StringBuilder token = new StringBuilder();
+    private int pushback = -2; // -2 when there is no character pushed back
+    private boolean lineStart = true;
+    private long games;
+    private long position; // characters read, less the one pushed back
+    private long gameOffset;
+
+    /**
+     * @param in read one character at a time, give a buffered reader
+     */
+    public PgnReader(Reader in) {
+        this.in = in;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * @return offset of the first character of the last game returned by next
+     */
+    public long getGameOffset() {
+        return gameOffset;
+    }
+
+    /**
+     * @return next game, null at the end of the input
+     */
+    public Game next() throws IOException {
+        Map<String, String> tags = new LinkedHashMap<>();
+        List<String> moves = new ArrayList<>();
+        boolean started = false;
+        for (int c = read(); c != -1; c = read()) {
+            if (Character.isWhitespace(c)) continue;
+            if (!started) {
+                gameOffset = position - 1;
+                started = true;
+            }
+            switch (c) {
+                case '[' -> {
+                    if (!moves.isEmpty()) { // no result token before the next game
+                        unread(c);
+                        return game(tags, moves, "*");
+                    }
+                    readTag(tags);
+                }
+                case '{' -> skipTo('}');
+                case ';' -> skipTo('\n');
+                case '(' -> skipVariation();
+                case ')' -> { } // unbalanced
+                case '$' -> readToken(c);
+                default -> {
+                    String word = readToken(c);
+                    if (isResult(word)) return game(tags, moves, word);
+                    String san = stripMoveNumber(word);
+                    if (!san.isEmpty() && !san.equals("e.p.")) moves.add(san);
+                }
+            }
+        }
+        return (tags.isEmpty() && moves.isEmpty()) ? null : game(tags, moves, "*");
+    }
+
+    private Game game(Map<String, String> tags, List<String> moves, String result) {
+        games++;
+        return new Game(tags, moves, result);
+    }
+
+    static boolean isResult(String word) {
+        return word.equals("1-0") || word.equals("0-1") || word.equals("1/2-1/2") || word.equals("*");
+    }
+
+    // 12.e4 -> e4, 12... -> empty
+    static String stripMoveNumber(String word) {
+        int i = 0;
+        while (i < word.length() && Character.isDigit(word.charAt(i))) i++;
+        if (i == 0) return word;
+        while (i < word.length() && word.charAt(i) == '.') i++;
+        return word.substring(i);
+    }
+
+    private void readTag(Map<String, String> tags) throws IOException {
+        token.setLength(0);
+        int c = read();
+        while (c != -1 && Character.isWhitespace(c)) c = read();
+        while (c != -1 && !Character.isWhitespace(c) && c != '"' && c != ']') {
+            token.append((char) c);
+            c = read();
+        }
+        String name = token.toString();
+        while (c != -1 && c != '"' && c != ']') c = read();
+        token.setLength(0);
+        if (c == '"') {
+            for (c = read(); c != -1 && c != '"'; c = read()) {
+                if (c == '\\') c = read();
+                if (c != -1) token.append((char) c);
+            }
+            while (c != -1 && c != ']') c = read();
+        }
+        tags.put(name, token.toString());
+    }
+
+    private String readToken(int first) throws IOException {
+        token.setLength(0);
+        token.append((char) first);
+        for (int c = read(); c != -1; c = read()) {
+            if (Character.isWhitespace(c) || c == '{' || c == '(' || c == ')' || c == ';' || c == '[') {
+                unread(c);
+                break;
+            }
+            token.append((char) c);
+        }
+        return token.toString();
+    }
+
+    private void skipTo(int end) throws IOException {
+        for (int c = read(); c != -1 && c != end; c = read()) {
+        }
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            if (c == -1) return;
+            if (c == '(') depth++;
+            else if (c == ')') depth--;
+            else if (c == '{') skipTo('}');
+            else if (c == ';') skipTo('\n');
+        }
+    }
+
+    // escape lines start with % in the first column, elsewhere % is read as part of a token
+    private int read() throws IOException {
+        int c;
+        if (pushback != -2) {
+            c = pushback;
+            pushback = -2;
+            position++;
+            return c;
+        }
+        c = in.read();
+        if (c != -1) position++;
+        if (c == '%' && lineStart) {
+            skipTo('\n');
+            c = '\n';
+        }
+        lineStart = c == '\n';
+        return c;
+    }
+
+    private void unread(int c) {
+        pushback = c;
+        position--;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,242 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.piece.Move;
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.github.fehinti.board.Board120Utils.*;
+
+/*
+ * Reader of Polyglot opening books (.bin). The file is memory mapped, never read onto the heap: a
+ * lookup is a binary search over the 16 byte entries, sorted by key, so it touches a few pages
+ * whatever the size of the book. Reads are absolute so a book is shared by threads.
+ * Entry, big endian: key (8 bytes), move (2), weight (2), learn (4).
+ *
+ * The key is the Polyglot zobrist key of the position, an XOR of the 781 Random64 constants of the
+ * Polyglot book format: piece on square at 64 * kind + 8 * rank + file (kind 0 black pawn,
+ * 1 white pawn, .. 11 white king), castling rights at 768..771, en passant file at 772..779, only
+ * when a pawn of the side to move stands next to the pawn that just moved, white to move at 780.
+ * The constants ship in PolyglotRandom, loadRandom64 reads another table of 781 values in that
+ * order from a text file (any 16 digit hex tokens).
+ */
+public class PolyglotBook implements AutoCloseable {
+
+    public static final int ENTRY_SIZE = 16;
+    public static final int RANDOM64_SIZE = 781;
+    static final int CASTLE_OFFSET = 768;
+    static final int EN_PASSANT_OFFSET = 772;
+    static final int TURN_OFFSET = 780;
+    private static final Pattern HEX64 = Pattern.compile("(?:0x)?([0-9a-fA-F]{16})");
+
+    /**
+     * @param move Polyglot encoding: to file 0..2, to rank 3..5, from file 6..8, from rank 9..11,
+     *             promotion 12..14 (1 knight .. 4 queen), castling as king takes own rook
+     */
+    public record Entry(long key, int move, int weight, int learn) {
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer book;
+    private final long[] random64;
+    private final int entries;
+
+    /**
+     * a book keyed with the Polyglot constants
+     */
+    public PolyglotBook(Path path) throws IOException {
+        this(path, PolyglotRandom.RANDOM64);
+    }
+
+    /**
+     * @param random64 the 781 Polyglot constants, see random64 and loadRandom64
+     */
+    public PolyglotBook(Path path, long[] random64) throws IOException {
+        if (random64.length != RANDOM64_SIZE)
+            throw new IllegalArgumentException("Expected " + RANDOM64_SIZE + " Random64 values, got " + random64.length);
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size % ENTRY_SIZE != 0 || size / ENTRY_SIZE > Integer.MAX_VALUE / ENTRY_SIZE) {
+            channel.close();
+            throw new IllegalArgumentException("Not a Polyglot book of at most 2 GB: " + path + " (" + size + " bytes)");
+        }
+        book = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        entries = (int) (size / ENTRY_SIZE);
+        this.random64 = random64;
+    }
+
+    /**
+     * @return a copy of the Polyglot constants
+     */
+    public static long[] random64() {
+        return PolyglotRandom.RANDOM64.clone();
+    }
+
+    /**
+     * @return the first 781 64 bit hex values of the file
+     */
+    public static long[] loadRandom64(Path path) throws IOException {
+        long[] random = new long[RANDOM64_SIZE];
+        int n = 0;
+        Matcher m = HEX64.matcher(Files.readString(path));
+        while (n < RANDOM64_SIZE && m.find()) random[n++] = Long.parseUnsignedLong(m.group(1), 16);
+        if (n < RANDOM64_SIZE) throw new IllegalArgumentException(path + " has " + n + " of " + RANDOM64_SIZE + " Random64 values");
+        return random;
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    public long key(Board120 board) {
+        return key(board, random64);
+    }
+
+    static long key(Board120 board, long[] random64) {
+        long key = 0;
+        for (int sq = 0; sq < BOARD_SIZE; sq++) {
+            int piece = board.getPieceOnSquare(Board120.getMailbox64Number(sq));
+            if (piece == EMPTY) continue;
+            // Polyglot kinds alternate black and white: black pawn 0, white pawn 1, black knight 2..
+            int kind = (piece > 0) ? 2 * (piece - WPAWN) + 1 : 2 * (piece - BPAWN);
+            key ^= random64[64 * kind + sq];
+        }
+        int rights = board.getCastlingRights();
+        if ((rights & WHITE_KINGSIDE) != 0) key ^= random64[CASTLE_OFFSET];
+        if ((rights & WHITE_QUEENSIDE) != 0) key ^= random64[CASTLE_OFFSET + 1];
+        if ((rights & BLACK_KINGSIDE) != 0) key ^= random64[CASTLE_OFFSET + 2];
+        if ((rights & BLACK_QUEENSIDE) != 0) key ^= random64[CASTLE_OFFSET + 3];
+        int ep = board.getEnPassant();
+        if (ep != OFF_BOARD && canCaptureEnPassant(board, ep)) key ^= random64[EN_PASSANT_OFFSET + ep % 10 - 1];
+        if (board.getSideToMove()) key ^= random64[TURN_OFFSET];
+        return key;
+    }
+
+    // a pawn of the side to move next to the pawn that made the double push, legal or not
+    static boolean canCaptureEnPassant(Board120 board, int ep) {
+        boolean white = board.getSideToMove();
+        int pawn = white ? WPAWN : BPAWN;
+        int left = white ? ep - 11 : ep + 9;
+        return board.getPieceOnSquare(left) == pawn || board.getPieceOnSquare(left + 2) == pawn;
+    }
+
+    /**
+     * @return entries of the key in book order, none if the key is not in the book
+     */
+    public List<Entry> entries(long key) {
+        int lo = 0, hi = entries;
+        // first entry with a key not below key, keys compare unsigned
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(book.getLong(mid * ENTRY_SIZE), key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        List<Entry> found = new ArrayList<>();
+        for (int i = lo; i < entries; i++) {
+            int at = i * ENTRY_SIZE;
+            if (book.getLong(at) != key) break;
+            found.add(new Entry(key, book.getShort(at + 8) & 0xffff, book.getShort(at + 10) & 0xffff, book.getInt(at + 12)));
+        }
+        return found;
+    }
+
+    /**
+     * @return book move of the position drawn at random by weight, 0 if the position is not in the
+     * book. Entries without a legal move in the position (a key collision) are skipped.
+     */
+    public int pick(Board120 board, RandomGenerator random) {
+        List<Entry> found = entries(key(board));
+        if (found.isEmpty()) return 0;
+        List<Integer> legal = legalMoves(board);
+        int[] moves = new int[found.size()];
+        int[] weights = new int[found.size()];
+        long total = 0;
+        for (int i = 0; i < found.size(); i++) {
+            moves[i] = toMove(found.get(i).move(), legal);
+            if (moves[i] == 0) continue;
+            weights[i] = found.get(i).weight();
+            total += weights[i];
+        }
+        if (total == 0) return 0;
+        long r = random.nextLong(total);
+        for (int i = 0; i < moves.length; i++) {
+            r -= weights[i];
+            if (r < 0) return moves[i];
+        }
+        throw new IllegalStateException("Unreachable");
+    }
+
+    /**
+     * @return the legal move with this Polyglot encoding, 0 if there is none
+     */
+    static int toMove(int polyglot, List<Integer> legal) {
+        for (int move : legal) {
+            if (encode(move) == polyglot) return move;
+        }
+        return 0;
+    }
+
+    /**
+     * @return Polyglot encoding of a move from the move generator
+     */
+    static int encode(int move) {
+        int from = Board120.getMailbox120Number(Move.getFromSquare(move));
+        int to = Board120.getMailbox120Number(Move.getTargetSquare(move));
+        int flag = Move.getFlag(move);
+        if (flag == Move.FLAG_CASTLE) to = (to > from) ? to + 1 : to - 2; // king takes rook, g1 -> h1, c1 -> a1
+        int promotion = (flag == Move.FLAG_PROMOTION || flag == Move.FLAG_PROMOTION_CAPTURE)
+                ? Move.getPromotion(move) - KNIGHT_PROMO + 1 : 0;
+        return (promotion << 12) | (from << 6) | to;
+    }
+
+    private static List<Integer> legalMoves(Board120 board) {
+        List<Integer> legal = new ArrayList<>();
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            board.make(move);
+            if (!VectorAttack120.isKingInCheck(board)) legal.add(move);
+            board.unmake(move);
+        }
+        return legal;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // args: book, [fen], prints the book moves of the position
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: PolyglotBook <book.bin> [fen]");
+            return;
+        }
+        Board120 board = (args.length > 1) ? FENParser.parseFENotation120(args[1]) : FENParser.startPos120();
+        try (PolyglotBook book = new PolyglotBook(Paths.get(args[0]))) {
+            long key = book.key(board);
+            List<Integer> legal = legalMoves(board);
+            System.out.printf("%s key %016x, %d entries in book%n", FENParser.getFENotation(board), key, book.size());
+            for (Entry entry : book.entries(key)) {
+                int move = toMove(entry.move(), legal);
+                System.out.printf("%-6s weight %5d learn %d%n", (move == 0) ? "?" : Move.printMove(move),
+                        entry.weight(), entry.learn());
+            }
+            int pick = book.pick(board, new Random());
+            System.out.println("pick " + ((pick == 0) ? "none" : Move.printMove(pick)));
+        }
+    }
+}
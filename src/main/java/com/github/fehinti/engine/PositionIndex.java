@@ -0,0 +1,205 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.board.ZobristHash;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.fehinti.board.Board120Utils.OFF_BOARD;
+
+/*
+ * Query side of the game index written by PgnIndexer: which games reached a position. The file is
+ * memory mapped in 1 GB chunks, as a mapped buffer holds at most 2 GB, and a query is a binary
+ * search over the 16 byte records, sorted by key then game, touching a few pages. Reads are
+ * absolute so an index is shared by threads.
+ * File, big endian: magic (8 bytes), key fingerprint (8), offset of the first record (8), count
+ * of PGN files (4), the PGN paths (DataOutput.writeUTF), zero padding to a multiple of 16, then
+ * the records: position key (8), game (8). A game is the index of its PGN file in the high 16 bits and the offset of the game in
+ * the file in the low 48 bits.
+ * The key is the zobrist key of the board with the en passant square only when a pawn can take,
+ * so a FEN that leaves out a square nobody can take on finds the same games. Keys depend on the
+ * ZobristHash table (its seed and the order it is drawn in), the fingerprint of the table the
+ * index was written with must match the running one.
+ */
+public class PositionIndex implements AutoCloseable {
+
+    static final long MAGIC = 0x504f_5349_4458_0002L; // "POSIDX" and the version
+    static final String FINGERPRINT_FEN = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1";
+    static final int RECORD_SIZE = 16;
+    static final int OFFSET_BITS = 48;
+    static final long MAX_OFFSET = (1L << OFFSET_BITS) - 1;
+    static final int MAX_FILES = 1 << 16;
+    static final int CHUNK_BITS = 30; // a multiple of the record size, no record spans two chunks
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final List<Path> files;
+    private final long first; // byte offset of the first record
+    private final long records;
+
+    public PositionIndex(Path path) throws IOException {
+        List<Path> names = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readLong() != MAGIC) throw new IllegalArgumentException("Not a position index: " + path);
+            if (in.readLong() != fingerprint())
+                throw new IllegalArgumentException("Position index written with other zobrist keys: " + path);
+            first = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) names.add(Paths.get(in.readUTF()));
+        }
+        files = List.copyOf(names);
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if (first % RECORD_SIZE != 0 || size < first || (size - first) % RECORD_SIZE != 0) {
+            channel.close();
+            throw new IllegalArgumentException("Truncated position index: " + path + " (" + size + " bytes)");
+        }
+        chunks = new MappedByteBuffer[(int) ((size + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = (long) i << CHUNK_BITS;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << CHUNK_BITS, size - start));
+        }
+        records = (size - first) / RECORD_SIZE;
+    }
+
+    /**
+     * @return the keys of the start position and of 1. e4, which use the piece, castling, side and
+     * en passant keys of the table
+     */
+    static long fingerprint() {
+        long e4 = FENParser.parseFENotation120(FINGERPRINT_FEN).getZobristKey();
+        return FENParser.startPos120().getZobristKey() ^ Long.rotateLeft(e4, 1);
+    }
+
+    static long align(long header) {
+        return (header + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+    }
+
+    /**
+     * @return number of (position, game) records
+     */
+    public long size() {
+        return records;
+    }
+
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    public static long key(Board120 board) {
+        long key = board.getZobristKey();
+        int ep = board.getEnPassant();
+        if (ep != OFF_BOARD && !PolyglotBook.canCaptureEnPassant(board, ep)) key ^= ZobristHash.enPassantKey(ep);
+        return key;
+    }
+
+    public static long game(int file, long offset) {
+        if (file < 0 || file >= MAX_FILES || offset < 0 || offset > MAX_OFFSET)
+            throw new IllegalArgumentException("Game out of range: file " + file + " offset " + offset);
+        return ((long) file << OFFSET_BITS) | offset;
+    }
+
+    public static int file(long game) {
+        return (int) (game >>> OFFSET_BITS);
+    }
+
+    public static long offset(long game) {
+        return game & MAX_OFFSET;
+    }
+
+    private long getLong(long at) {
+        return chunks[(int) (at >>> CHUNK_BITS)].getLong((int) (at & ((1L << CHUNK_BITS) - 1)));
+    }
+
+    private long keyAt(long i) {
+        return getLong(first + i * RECORD_SIZE);
+    }
+
+    // first record with a key not below key (upper false) or above key (upper true), keys compare unsigned
+    private long bound(long key, boolean upper) {
+        long lo = 0, hi = records;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            int c = Long.compareUnsigned(keyAt(mid), key);
+            if (c < 0 || (upper && c == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * @return number of games that reached the position of key, two binary searches whatever the count
+     */
+    public long count(long key) {
+        return bound(key, true) - bound(key, false);
+    }
+
+    /**
+     * @return at most limit games that reached the position of key, in file and offset order
+     */
+    public long[] games(long key, int limit) {
+        long start = bound(key, false);
+        int n = 0;
+        while (n < limit && start + n < records && keyAt(start + n) == key) n++;
+        long[] games = new long[n];
+        for (int i = 0; i < n; i++) games[i] = getLong(first + (start + i) * RECORD_SIZE + Long.BYTES);
+        return games;
+    }
+
+    public long[] games(Board120 board, int limit) {
+        return games(key(board), limit);
+    }
+
+    /**
+     * @return the game read back from its PGN file
+     */
+    public PgnReader.Game read(long game) throws IOException {
+        int file = file(game);
+        if (file >= files.size()) throw new IllegalArgumentException("No PGN file " + file + " in the index");
+        try (FileChannel channel = FileChannel.open(files.get(file), StandardOpenOption.READ)) {
+            channel.position(offset(game));
+            PgnReader pgn = new PgnReader(new BufferedReader(Channels.newReader(channel, StandardCharsets.ISO_8859_1)));
+            return pgn.next();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // args: index, fen, [limit], prints the games that reached the position
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: PositionIndex <index> <fen> [limit]");
+            return;
+        }
+        int limit = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+        try (PositionIndex index = new PositionIndex(Paths.get(args[0]))) {
+            long key = key(FENParser.parseFENotation120(args[1]));
+            long st = System.nanoTime();
+            long count = index.count(key);
+            long[] games = index.games(key, limit);
+            System.out.printf("%d games of %d records in %.3f ms%n", count, index.size(), (System.nanoTime() - st) / 1e6);
+            for (long game : games) {
+                PgnReader.Game g = index.read(game);
+                System.out.printf("%s:%d %s - %s %s%n", index.getFiles().get(file(game)).getFileName(), offset(game),
+                        g.tags().getOrDefault("White", "?"), g.tags().getOrDefault("Black", "?"), g.result());
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.fehinti.engine;
+
+/*
+ * In place sort of the parallel key and value arrays of the external sorts (BookBuilder,
+ * PgnIndexer): by unsigned key then unsigned value, the order of the files they write. A
+ * quicksort on the primitive arrays, no boxing and no index array, so a run buffer of a few
+ * million records sorts without allocating.
+ */
+final class RunSort {
+
+    private static final int INSERTION_SORT = 16;
+
+    private RunSort() {
+    }
+
+    /**
+     * sorts keys[0..size) and values[0..size) by key then value
+     */
+    static void sort(long[] keys, long[] values, int size) {
+        sort(keys, values, 0, size - 1);
+    }
+
+    private static int compare(long[] keys, long[] values, int i, int j) {
+        int c = Long.compareUnsigned(keys[i], keys[j]);
+        return (c != 0) ? c : Long.compareUnsigned(values[i], values[j]);
+    }
+
+    private static void swap(long[] keys, long[] values, int i, int j) {
+        long k = keys[i];
+        keys[i] = keys[j];
+        keys[j] = k;
+        long v = values[i];
+        values[i] = values[j];
+        values[j] = v;
+    }
+
+    // recursing on the smaller side keeps the stack at log n
+    private static void sort(long[] keys, long[] values, int lo, int hi) {
+        while (hi - lo > INSERTION_SORT) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(keys, values, mid, lo) < 0) swap(keys, values, mid, lo);
+            if (compare(keys, values, hi, lo) < 0) swap(keys, values, hi, lo);
+            if (compare(keys, values, hi, mid) < 0) swap(keys, values, hi, mid);
+            swap(keys, values, mid, hi - 1); // median of three as pivot
+            int pivot = hi - 1, i = lo, j = hi - 1;
+            while (true) {
+                while (compare(keys, values, ++i, pivot) < 0) { }
+                while (compare(keys, values, --j, pivot) > 0) { }
+                if (i >= j) break;
+                swap(keys, values, i, j);
+            }
+            swap(keys, values, i, hi - 1);
+            if (i - lo < hi - i) {
+                sort(keys, values, lo, i - 1);
+                lo = i + 1;
+            } else {
+                sort(keys, values, i + 1, hi);
+                hi = i - 1;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && compare(keys, values, j, j - 1) < 0; j--) swap(keys, values, j, j - 1);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.piece.Move;
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.github.fehinti.board.Board120Utils.*;
+import static com.github.fehinti.piece.Move.*;
+
+/*
+ * Search context of a single thread: iterative deepening negamax alpha beta with a capture only
+ * quiescence search, principal variation move first, then captures by most valuable victim, then
+ * quiet moves by history (butterfly table of the quiet moves that caused a cutoff).
+ * Scores are integers from the side to move's point of view, mate in n plies is MATE - n.
+ * A Search is reused between positions but not shared between threads, each thread owns one.
+ * The history table is kept from one search to the next (halved at every start) so a search of
+ * the next move or of a ponder position starts with what the previous one learned.
+ * MultiPV: every iteration searches the root once per line, each time without the root moves of
+ * the lines already found at that depth. The lines share the history table and each starts from
+ * its own principal variation of the previous iteration.
+ */
+public class Search {
+
+    public static final int MAX_PLY = 64;
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    public static final int MATE_BOUND = MATE - MAX_PLY; // scores above are mate scores
+    static final int DRAW_BY_50 = 100; // half moves
+
+    // victim values for ordering captures, indexed by the unsigned piece (WPAWN..WKING)
+    static final int[] VICTIM = { 0, 100, 300, 300, 500, 900, 0 };
+    static final int TACTICAL_SCORE = 1 << 14; // ordering score of captures and promotions, above any history
+    static final int HISTORY_MAX = TACTICAL_SCORE - 1;
+
+    /**
+     * @param depth maximum depth in plies, MAX_PLY for none
+     * @param nodes node budget, 0 for none
+     * @param time  clock of this move, null for none
+     */
+    public record Limits(int depth, long nodes, TimeManager time) {
+        public Limits {
+            if (depth <= 0 || depth > MAX_PLY) throw new IllegalArgumentException("Invalid depth " + depth);
+            if (nodes < 0) throw new IllegalArgumentException("Invalid node budget " + nodes);
+        }
+
+        public Limits(int depth, long nodes) {
+            this(depth, nodes, null);
+        }
+
+        public static Limits depth(int depth) {
+            return new Limits(depth, 0);
+        }
+
+        public static Limits time(TimeManager time) {
+            return new Limits(MAX_PLY, 0, time);
+        }
+    }
+
+    /**
+     * outcome of the last completed iteration, move is 0 when the side to move has no legal move
+     */
+    public record Result(int move, int score, int depth, long nodes, long nanos, int[] pv) {
+        public String bestMove() {
+            return (move == 0) ? "0000" : Move.printMove(move);
+        }
+
+        /**
+         * @return UCI info line of this result, e.g.
+         *   info depth 6 multipv 1 score cp 23 nodes 412345 nps 1023456 time 403 pv e2e4 e7e5
+         */
+        public String info(int multiPv) {
+            StringBuilder sb = new StringBuilder("info depth ").append(depth)
+                    .append(" multipv ").append(multiPv);
+            if (Math.abs(score) >= MATE_BOUND) {
+                int plies = MATE - Math.abs(score);
+                sb.append(" score mate ").append((score > 0) ? (plies + 1) / 2 : -(plies / 2));
+            } else sb.append(" score cp ").append(score);
+            sb.append(" nodes ").append(nodes)
+                    .append(" nps ").append(nodes * 1_000_000_000L / Math.max(1, nanos))
+                    .append(" time ").append(nanos / 1_000_000);
+            if (pv.length > 0) sb.append(" pv");
+            for (int move : pv) sb.append(' ').append(Move.printMove(move));
+            return sb.toString();
+        }
+    }
+
+    private final Evaluator evaluator;
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private int[] previousPv = new int[0];
+    private final int[] played = new int[MAX_PLY + 1]; // moves from the root to the current ply
+    private int[] excluded = new int[0]; // root moves of the lines already found at this depth
+    private int excludedCount;
+    private int rootDepth;
+    private Board120 board;
+    private final int[][] history = new int[BOARD_SIZE_120][BOARD_SIZE_120]; // [from][to] of quiet moves
+    private final SearchStats stats = new SearchStats();
+    private Limits limits;
+    private volatile TimeManager time; // set late by ponderHit
+    private long nodes;
+    private volatile boolean stop;
+
+    public Search(Evaluator evaluator) {
+        if (evaluator == null) throw new IllegalArgumentException("Null evaluator");
+        this.evaluator = evaluator;
+    }
+
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * counters of the running or last search of this thread
+     */
+    public SearchStats.Snapshot getStats() {
+        return stats.snapshot(nodes);
+    }
+
+    // asks a running search to return, safe to call from another thread
+    public void stop() {
+        stop = true;
+    }
+
+    /**
+     * the opponent played the move this search was pondering on, from now on the search runs on the
+     * clock, safe to call from another thread
+     */
+    public void ponderHit(TimeManager time) {
+        this.time = time;
+    }
+
+    /**
+     * @param board  searched in place, it is back in its original state on return
+     * @param limits depth and node budget
+     */
+    public Result search(Board120 board, Limits limits) {
+        start(limits, new int[0]);
+        return run(board);
+    }
+
+    /**
+     * @param multiPv   number of lines, at most the number of legal moves are returned
+     * @param iteration receives the lines of every completed iteration, best first, may be null
+     * @return lines of the last completed iteration, best first
+     */
+    public List<Result> search(Board120 board, Limits limits, int multiPv, Consumer<List<Result>> iteration) {
+        if (multiPv <= 0) throw new IllegalArgumentException("Invalid MultiPV " + multiPv);
+        start(limits, new int[0]);
+        return run(board, multiPv, iteration);
+    }
+
+    /**
+     * first half of search, for a search run on another thread: called on the thread that will
+     * later call stop() or ponderHit() so neither can be lost to the reset
+     *
+     * @param pvHint expected principal variation, searched first by the first iteration
+     */
+    void start(Limits limits, int[] pvHint) {
+        this.limits = limits;
+        time = limits.time();
+        nodes = 0;
+        stop = false;
+        previousPv = pvHint;
+        stats.reset(evaluator);
+        ageHistory();
+    }
+
+    Result run(Board120 board) {
+        return run(board, 1, null).get(0);
+    }
+
+    private List<Result> run(Board120 board, int multiPv, Consumer<List<Result>> iteration) {
+        this.board = board;
+        long st = System.nanoTime();
+        int lines = Math.max(1, Math.min(multiPv, countLegalMoves()));
+        int[][] linePvs = new int[lines][];
+        Arrays.fill(linePvs, new int[0]);
+        linePvs[0] = previousPv;
+        excluded = new int[lines];
+        List<Result> best = List.of(new Result(0, 0, 0, 0, 0, new int[0]));
+        for (int depth = 1; depth <= limits.depth(); depth++) {
+            rootDepth = depth;
+            SearchIterationEvent event = JfrEvents.ENABLED ? new SearchIterationEvent() : null;
+            if (event != null) event.begin();
+            List<Result> current = new ArrayList<>(lines);
+            for (int line = 0; line < lines; line++) {
+                excludedCount = line;
+                previousPv = linePvs[line];
+                int score = negamax(depth, 0, -INFINITY, INFINITY);
+                if (stop && depth > 1) break;
+                int[] linePv = Arrays.copyOf(pv[0], pvLength[0]);
+                current.add(new Result((linePv.length > 0) ? linePv[0] : 0, score, depth, nodes,
+                        System.nanoTime() - st, linePv));
+                if (linePv.length == 0) break; // no legal move
+                excluded[line] = linePv[0];
+            }
+            if (stop && depth > 1) break; // incomplete iteration, keep the previous one
+            if (current.isEmpty()) break;
+            current.sort((a, b) -> Integer.compare(b.score(), a.score()));
+            for (int line = 0; line < current.size(); line++) linePvs[line] = current.get(line).pv();
+            best = current;
+            stats.iteration(depth, nodes, System.nanoTime() - st);
+            if (event != null && event.shouldCommit()) {
+                event.depth = depth;
+                event.score = best.get(0).score();
+                event.nodes = stats.lastIterationNodes();
+                event.lines = best.size();
+                event.bestMove = best.get(0).bestMove();
+                event.commit();
+            }
+            if (iteration != null) iteration.accept(Collections.unmodifiableList(current));
+            int score = best.get(0).score();
+            if (stop || (lines == 1 && Math.abs(score) >= MATE_BOUND)) break;
+            TimeManager clock = time;
+            if (clock != null && !clock.nextIteration(best.get(0).move(), score)) break;
+        }
+        excludedCount = 0;
+        long nanos = System.nanoTime() - st;
+        List<Result> results = new ArrayList<>(best.size());
+        for (Result r : best) results.add(new Result(r.move(), r.score(), r.depth(), nodes, nanos, r.pv()));
+        return results;
+    }
+
+    private int countLegalMoves() {
+        int legal = 0;
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            board.make(move);
+            if (!VectorAttack120.isKingInCheck(board)) legal++;
+            board.unmake(move);
+        }
+        return legal;
+    }
+
+    private boolean isExcluded(int move) {
+        for (int i = 0; i < excludedCount; i++) {
+            if (excluded[i] == move) return true;
+        }
+        return false;
+    }
+
+    // the first iteration always completes so there is a move to play
+    private boolean checkLimits() {
+        if (rootDepth > 1) {
+            if (limits.nodes() > 0 && nodes >= limits.nodes()) stop = true;
+            else if (nodes % TimeManager.POLL_NODES == 0) {
+                TimeManager clock = time;
+                if (clock != null && clock.hardExpired()) stop = true;
+            }
+        }
+        return stop;
+    }
+
+    private int evaluate() {
+        int score = (int) evaluator.evaluate(board);
+        return board.getSideToMove() ? score : -score;
+    }
+
+    private boolean inCheck() {
+        boolean white = board.getSideToMove();
+        return VectorAttack120.isSquareChecked(board, white, white ? board.getWhiteKingSq() : board.getBlackKingSq());
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = 0;
+        if (ply > 0 && (board.isRepetition() || board.getHalfMoveClock() >= DRAW_BY_50)) return 0;
+        if (depth <= 0 || ply >= MAX_PLY) return quiescence(ply, alpha, beta);
+        nodes++;
+        if (checkLimits() && ply > 0) return 0;
+
+        int[] moves = orderedMoves(ply);
+        int legal = 0;
+        for (int move : moves) {
+            if (ply == 0 && excludedCount > 0 && isExcluded(move)) continue;
+            board.make(move);
+            if (VectorAttack120.isKingInCheck(board)) {
+                board.unmake(move);
+                continue;
+            }
+            legal++;
+            played[ply] = move;
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            board.unmake(move);
+            if (stop) {
+                if (ply > 0) return 0;
+                break; // keep the root moves searched so far
+            }
+            if (score > alpha) {
+                alpha = score;
+                pv[ply][0] = move;
+                System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+                pvLength[ply] = pvLength[ply + 1] + 1;
+                if (score >= beta) {
+                    if (SearchStats.ENABLED) stats.cutoff(legal - 1);
+                    if (!isTactical(move)) updateHistory(move, depth);
+                    return beta;
+                }
+            }
+        }
+        if (legal == 0) return inCheck() ? -MATE + ply : 0;
+        return alpha;
+    }
+
+    private int quiescence(int ply, int alpha, int beta) {
+        nodes++;
+        if (SearchStats.ENABLED) stats.qnodes++;
+        if (checkLimits() || ply >= MAX_PLY) return evaluate();
+        int standPat = evaluate();
+        if (standPat >= beta) return beta;
+        alpha = Math.max(alpha, standPat);
+        for (int move : orderedMoves(ply)) {
+            if (!isTactical(move)) continue;
+            board.make(move);
+            if (VectorAttack120.isKingInCheck(board)) {
+                board.unmake(move);
+                continue;
+            }
+            played[ply] = move;
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            board.unmake(move);
+            if (score >= beta) return beta;
+            alpha = Math.max(alpha, score);
+        }
+        return alpha;
+    }
+
+    private void updateHistory(int move, int depth) {
+        int[] row = history[getFromSquare(move)];
+        int to = getTargetSquare(move);
+        row[to] += depth * depth;
+        if (row[to] > HISTORY_MAX) ageHistory();
+    }
+
+    private void ageHistory() {
+        for (int[] row : history) {
+            for (int i = 0; i < row.length; i++) row[i] >>= 1;
+        }
+    }
+
+    static boolean isTactical(int move) {
+        int flag = getFlag(move);
+        return flag == FLAG_CAPTURE || flag == FLAG_EN_PASSANT || flag == FLAG_PROMOTION || flag == FLAG_PROMOTION_CAPTURE;
+    }
+
+    // previous principal variation move first, then captures by victim, then quiet moves by history
+    private int[] orderedMoves(int ply) {
+        List<Integer> generated = MoveGenerator.generatePseudoLegal(board);
+        int n = generated.size();
+        // a full move does not fit in 16 bits, the scored list holds its place in the generated
+        // list instead, counted from the end so equal scores keep the generation order
+        int[] scored = new int[n];
+        int pvMove = (ply < previousPv.length && isOnPreviousPv(ply)) ? previousPv[ply] : 0;
+        for (int i = 0; i < n; i++) {
+            int move = generated.get(i);
+            int score;
+            if (move == pvMove) score = Short.MAX_VALUE;
+            else if (isTactical(move)) {
+                int victim = board.getPieceOnSquare(getTargetSquare(move));
+                if (victim < 0) victim = victim - BPAWN + WPAWN;
+                // en passant and quiet promotions land on an empty square
+                score = TACTICAL_SCORE + ((victim >= WPAWN && victim <= WKING) ? VICTIM[victim] : VICTIM[WPAWN]);
+            } else score = history[getFromSquare(move)][getTargetSquare(move)];
+            scored[i] = scoredMove(n - 1 - i, score);
+        }
+        sortByScore(scored, n);
+        int[] moves = new int[n];
+        for (int i = 0; i < n; i++) moves[i] = generated.get(n - 1 - getScoredMove(scored[i]));
+        return moves;
+    }
+
+    // the moves played to reach this ply are the start of the previous principal variation
+    private boolean isOnPreviousPv(int ply) {
+        for (int i = 0; i < ply; i++) {
+            if (played[i] != previousPv[i]) return false;
+        }
+        return true;
+    }
+}
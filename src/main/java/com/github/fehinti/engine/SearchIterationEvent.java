@@ -0,0 +1,35 @@
+package com.github.fehinti.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * JFR event of a completed search iteration, its duration is the time of the iteration. Created
+ * only when JfrEvents.ENABLED.
+ */
+@Name("com.github.fehinti.SearchIteration")
+@Label("Search Iteration")
+@Category({ "Chess", "Search" })
+@Description("Iterative deepening iteration completed")
+class SearchIterationEvent extends Event {
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Score")
+    @Description("Centipawns from the side to move's point of view, best line")
+    int score;
+
+    @Label("Nodes")
+    @Description("Nodes of this iteration")
+    long nodes;
+
+    @Label("Lines")
+    int lines;
+
+    @Label("Best Move")
+    String bestMove;
+}
@@ -0,0 +1,139 @@
+package com.github.fehinti.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Counters of one search thread. Every Search owns one and updates plain fields, nothing is shared
+ * so there is no contention, the totals of several threads are the sum of their snapshots (plus).
+ * The per node counters (quiescence nodes, beta cutoffs by move index) are only kept when the JVM
+ * runs with -Dengine.stats=true: ENABLED is a static final so with counting off the JIT drops the
+ * guarded increments. Nodes and the nodes and time of every completed iteration are always kept,
+ * they cost one update per iteration.
+ * The eval cache counters are those of the cache, a cache shared by several threads reports the
+ * probes of all of them.
+ */
+public final class SearchStats {
+
+    public static final boolean ENABLED = Boolean.getBoolean("engine.stats");
+    public static final int CUTOFF_INDEXES = 8; // cutoffs on the 1st..7th move searched, the last slot is 8th and later
+
+    /**
+     * @param nodes nodes of this iteration alone
+     */
+    public record Iteration(int depth, long nodes, long nanos) {
+        public long nps() {
+            return nodes * 1_000_000_000L / Math.max(1, nanos);
+        }
+    }
+
+    /**
+     * @param cutoffsByIndex cutoffsByIndex[i] beta cutoffs on the (i+1)th legal move searched
+     */
+    public record Snapshot(long nodes, long qnodes, long betaCutoffs, long[] cutoffsByIndex, long evalProbes,
+                           long evalHits, List<Iteration> iterations) {
+
+        // share of the beta cutoffs found on the first move, a measure of the move ordering
+        public double firstMoveCutoffRate() {
+            return (betaCutoffs == 0) ? 0 : (double) cutoffsByIndex[0] / betaCutoffs;
+        }
+
+        public double evalHitRate() {
+            return (evalProbes == 0) ? 0 : (double) evalHits / evalProbes;
+        }
+
+        // totals of two threads, iterations are kept per thread and not merged
+        public Snapshot plus(Snapshot other) {
+            long[] cutoffs = new long[CUTOFF_INDEXES];
+            for (int i = 0; i < CUTOFF_INDEXES; i++) cutoffs[i] = cutoffsByIndex[i] + other.cutoffsByIndex[i];
+            List<Iteration> all = new ArrayList<>(iterations);
+            all.addAll(other.iterations);
+            return new Snapshot(nodes + other.nodes, qnodes + other.qnodes, betaCutoffs + other.betaCutoffs, cutoffs,
+                    evalProbes + other.evalProbes, evalHits + other.evalHits, List.copyOf(all));
+        }
+
+        /**
+         * @return UCI info string line with the counters, the node counts of the info lines are elsewhere
+         */
+        public String info() {
+            StringBuilder sb = new StringBuilder("info string");
+            if (ENABLED) {
+                sb.append(" qnodes ").append(qnodes)
+                        .append(" cutoffs ").append(betaCutoffs)
+                        .append(String.format(" firstmove %.1f%%", 100 * firstMoveCutoffRate()))
+                        .append(" byindex ");
+                for (int i = 0; i < CUTOFF_INDEXES; i++) sb.append((i == 0) ? "" : "/").append(cutoffsByIndex[i]);
+            }
+            sb.append(" evalprobes ").append(evalProbes)
+                    .append(String.format(" evalhits %.1f%%", 100 * evalHitRate()));
+            return sb.toString();
+        }
+    }
+
+    long qnodes;
+    long betaCutoffs;
+    final long[] cutoffsByIndex = new long[CUTOFF_INDEXES];
+    private final List<Iteration> iterations = new ArrayList<>();
+    private EvalCache cache;
+    private long cacheHits, cacheMisses; // at the start of the search
+    private long iterationNodes, iterationNanos; // totals at the end of the last iteration
+
+    void reset(Evaluator evaluator) {
+        qnodes = 0;
+        betaCutoffs = 0;
+        Arrays.fill(cutoffsByIndex, 0);
+        synchronized (iterations) {
+            iterations.clear();
+        }
+        iterationNodes = 0;
+        iterationNanos = 0;
+        cache = (evaluator instanceof EvalCache) ? (EvalCache) evaluator : null;
+        if (cache != null) {
+            cacheHits = cache.getHits();
+            cacheMisses = cache.getMisses();
+        }
+    }
+
+    /**
+     * @param index 0 for the first legal move searched
+     */
+    void cutoff(int index) {
+        betaCutoffs++;
+        cutoffsByIndex[Math.min(index, CUTOFF_INDEXES - 1)]++;
+    }
+
+    /**
+     * @param nodes nodes since the start of the search
+     * @param nanos time since the start of the search
+     */
+    void iteration(int depth, long nodes, long nanos) {
+        synchronized (iterations) {
+            iterations.add(new Iteration(depth, nodes - iterationNodes, nanos - iterationNanos));
+        }
+        iterationNodes = nodes;
+        iterationNanos = nanos;
+    }
+
+    long lastIterationNodes() {
+        synchronized (iterations) {
+            return iterations.isEmpty() ? 0 : iterations.get(iterations.size() - 1).nodes();
+        }
+    }
+
+    /**
+     * read from another thread while the search runs the counters are approximate
+     */
+    Snapshot snapshot(long nodes) {
+        long hits = 0, probes = 0;
+        if (cache != null) {
+            hits = cache.getHits() - cacheHits;
+            probes = hits + cache.getMisses() - cacheMisses;
+        }
+        List<Iteration> copy;
+        synchronized (iterations) {
+            copy = List.copyOf(iterations);
+        }
+        return new Snapshot(nodes, qnodes, betaCutoffs, cutoffsByIndex.clone(), probes, hits, copy);
+    }
+}
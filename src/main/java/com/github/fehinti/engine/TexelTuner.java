@@ -0,0 +1,405 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.board.Material;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+import static com.github.fehinti.board.Board120Utils.*;
+
+/*
+ * Texel tuning of the PESTO piece values and square tables against game results.
+ * Input is a text file with one position per line: a FEN followed by the result of the game it was
+ * taken from, white's point of view, as 1-0, 0-1, 1/2-1/2 or a number 1.0, 0.5, 0.0 (quotes,
+ * brackets and a trailing ';' are ignored). Positions should be quiet, there is no quiescence here.
+ *
+ * Lines are parsed in parallel batches with FENParser and every position is kept in a few flat
+ * arrays instead of a Board120:
+ *   pieces  short per piece, index of the piece in PESTO's flat tables (black pieces are rows 6..11)
+ *   start   first piece of every position, start[i + 1] - start[i] pieces
+ *   phase, result (0, 1, 2 halves of a point), pawn structure mg / eg (not tuned, a constant here)
+ * That is up to 74 bytes a position (64 for 32 pieces, 4 start, 1 + 1, 2 + 2), 740MB for 10M positions.
+ * The arrays grow by doubling and a copy holds the old and the new array at once, so the heap briefly
+ * needs 2 to 3 times that.
+ * PESTO's score is linear in the tables, so the evaluation and the gradient of the mean squared error
+ * of sigmoid(K * score) against the result are computed straight from those arrays. The gradient is
+ * summed by a fork/join task over ranges of positions, then folded from the 12 x 64 table cells back
+ * onto the 780 parameters and applied with Adam. Output is a table file for PESTO.load.
+ */
+public class TexelTuner {
+
+    static final int BATCH = 1 << 16;
+    static final int SPLIT = 1 << 14; // positions per fork/join leaf
+    static final int CELLS = PIECE_TYPE_COUNT * BOARD_SIZE;
+    static final int PIECES = PESTO.PIECES;
+    // parameters: mid values, end values, mid tables, end tables
+    static final int MID_VAL = 0;
+    static final int END_VAL = MID_VAL + PIECES;
+    static final int MID_TABLE = END_VAL + PIECES;
+    static final int END_TABLE = MID_TABLE + PIECES * BOARD_SIZE;
+    static final int PARAMS = END_TABLE + PIECES * BOARD_SIZE;
+
+    // positions, see above
+    short[] pieces = new short[BATCH * 32];
+    int[] start = new int[BATCH + 1];
+    byte[] phase = new byte[BATCH];
+    byte[] result = new byte[BATCH];
+    short[] pawnMid = new short[BATCH];
+    short[] pawnEnd = new short[BATCH];
+    int size;
+    long skipped;
+
+    final double[] params = new double[PARAMS];
+    double k = 0.0065; // close to ln(10) / 400 * 1.13, refined by fitK
+
+    public TexelTuner(PESTO initial) {
+        for (int pc = 0; pc < PIECES; pc++) {
+            params[MID_VAL + pc] = initial.getMidGameVal()[pc];
+            params[END_VAL + pc] = initial.getEndGameVal()[pc];
+            int[] mid = initial.getMidGameTable(pc);
+            int[] end = initial.getEndGameTable(pc);
+            for (int sq = 0; sq < BOARD_SIZE; sq++) {
+                params[MID_TABLE + pc * BOARD_SIZE + sq] = mid[sq];
+                params[END_TABLE + pc * BOARD_SIZE + sq] = end[sq];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return result in halves of a point, -1 if the line has no result
+     */
+    static int parseResult(String text) {
+        String r = text.replaceAll("[\"\\[\\];]", " ").trim();
+        if (r.isEmpty()) return -1;
+        if (r.startsWith("c9 ")) r = r.substring(3).trim();
+        switch (r) {
+            case "1-0": return 2;
+            case "0-1": return 0;
+            case "1/2-1/2": return 1;
+            default:
+                // a decimal point tells 1.0 from a full move number
+                if (r.indexOf('.') < 0) return -1;
+                try {
+                    double score = Double.parseDouble(r);
+                    if (score == 0 || score == 0.5 || score == 1) return (int) (score * 2);
+                } catch (NumberFormatException e) {
+                    // not a result
+                }
+                return -1;
+        }
+    }
+
+    /**
+     * @return { result, phase, pawn mid, pawn end, pieces... } or null if the line is not a position
+     */
+    static short[] encode(String line) {
+        String[] fields = line.trim().split("\\s+", 7);
+        if (fields.length < 5) return null;
+        // FEN is 4 to 6 fields, the result follows
+        int fenFields = 4;
+        int res = -1;
+        for (; fenFields < fields.length && fenFields <= 6; fenFields++) {
+            res = parseResult(String.join(" ", Arrays.copyOfRange(fields, fenFields, fields.length)));
+            if (res >= 0) break;
+        }
+        if (res < 0) return null;
+        String fen = String.join(" ", Arrays.copyOf(fields, fenFields));
+        if (fenFields == 4) fen += " 0 1";
+        else if (fenFields == 5) fen += " 1";
+        Board120 board;
+        try {
+            board = FENParser.parseFENotation120(fen);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        int[] white = board.getWhitePieceList();
+        int[] black = board.getBlackPieceList();
+        short[] encoded = new short[4 + 2 * MAX_LEN_16];
+        int n = 4;
+        for (int i = 0; i < MAX_LEN_16; i++) {
+            if (white[i] != OFF_BOARD) encoded[n++] = (short) PESTO.tableIndex(white[i], true);
+            if (black[i] != OFF_BOARD) encoded[n++] = (short) PESTO.tableIndex(black[i], false);
+        }
+        PawnStructure.Entry pawns = PawnStructure.evaluate(board, new PawnStructure.Entry());
+        encoded[0] = (short) res;
+        encoded[1] = (short) Material.phase(board.getMaterialKey());
+        encoded[2] = (short) pawns.getMidGame();
+        encoded[3] = (short) pawns.getEndGame();
+        return Arrays.copyOf(encoded, n);
+    }
+
+    void add(short[] encoded) {
+        int n = encoded.length - 4;
+        if (size + 1 >= start.length) {
+            int capacity = start.length * 2;
+            start = Arrays.copyOf(start, capacity + 1);
+            phase = Arrays.copyOf(phase, capacity);
+            result = Arrays.copyOf(result, capacity);
+            pawnMid = Arrays.copyOf(pawnMid, capacity);
+            pawnEnd = Arrays.copyOf(pawnEnd, capacity);
+        }
+        int from = start[size];
+        if (from + n > pieces.length) pieces = Arrays.copyOf(pieces, Math.max(pieces.length * 2, from + n));
+        System.arraycopy(encoded, 4, pieces, from, n);
+        result[size] = (byte) encoded[0];
+        phase[size] = (byte) encoded[1];
+        pawnMid[size] = encoded[2];
+        pawnEnd[size] = encoded[3];
+        start[++size] = from + n;
+    }
+
+    /**
+     * reads positions in batches of lines parsed in parallel, lines without a position and a result
+     * are skipped
+     */
+    public void load(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            List<String> batch = new ArrayList<>(BATCH);
+            for (String line = reader.readLine(); ; line = reader.readLine()) {
+                if (line != null) batch.add(line);
+                if (batch.size() == BATCH || (line == null && !batch.isEmpty())) {
+                    List<short[]> records = batch.parallelStream().map(TexelTuner::encode).toList();
+                    for (short[] encoded : records) {
+                        if (encoded != null) add(encoded);
+                        else skipped++;
+                    }
+                    batch.clear();
+                }
+                if (line == null) break;
+            }
+        }
+    }
+
+    // flat tables the way PESTO.build lays them out, from the current parameters
+    void cells(double[] mid, double[] end) {
+        for (int pc = 0; pc < PIECES; pc++) {
+            for (int sq = 0; sq < BOARD_SIZE; sq++) {
+                int w = pc * BOARD_SIZE + sq;
+                int b = (PESTO.BLACK_ROW + pc) * BOARD_SIZE + sq;
+                mid[w] = params[MID_VAL + pc] + params[MID_TABLE + pc * BOARD_SIZE + (sq ^ 56)];
+                end[w] = params[END_VAL + pc] + params[END_TABLE + pc * BOARD_SIZE + (sq ^ 56)];
+                mid[b] = params[MID_VAL + pc] + params[MID_TABLE + pc * BOARD_SIZE + sq];
+                end[b] = params[END_VAL + pc] + params[END_TABLE + pc * BOARD_SIZE + sq];
+            }
+        }
+    }
+
+    // same score as PESTO.evaluate on the parameters behind mid and end
+    double evaluate(int i, double[] mid, double[] end) {
+        double mg = pawnMid[i], eg = pawnEnd[i];
+        for (int j = start[i]; j < start[i + 1]; j++) {
+            int cell = pieces[j];
+            if (cell < PESTO.BLACK_ROW * BOARD_SIZE) {
+                mg += mid[cell];
+                eg += end[cell];
+            } else {
+                mg -= mid[cell];
+                eg -= end[cell];
+            }
+        }
+        int ph = phase[i];
+        return (mg * ph + eg * (Material.MAX_PHASE - ph)) / Material.MAX_PHASE;
+    }
+
+    static double sigmoid(double k, double score) {
+        return 1 / (1 + Math.exp(-k * score));
+    }
+
+    public double error(double k) {
+        double[] mid = new double[CELLS], end = new double[CELLS];
+        cells(mid, end);
+        double sum = IntStream.range(0, size).parallel().mapToDouble(i -> {
+            double e = result[i] / 2. - sigmoid(k, evaluate(i, mid, end));
+            return e * e;
+        }).sum();
+        return sum / Math.max(1, size);
+    }
+
+    /**
+     * ternary search of the K minimizing the error of the current parameters
+     */
+    public double fitK() {
+        double lo = 0.0005, hi = 0.05;
+        for (int i = 0; i < 40; i++) {
+            double m1 = lo + (hi - lo) / 3, m2 = hi - (hi - lo) / 3;
+            if (error(m1) < error(m2)) hi = m2;
+            else lo = m1;
+        }
+        k = (lo + hi) / 2;
+        return k;
+    }
+
+    /*
+     * sums the error and its gradient over the flat table cells of positions [from, to),
+     * returns { d/d mid cells [768], d/d end cells [768], error }
+     */
+    static final class GradientTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        final transient TexelTuner tuner; // tasks are never serialized
+        final int from, to;
+        final double[] mid, end;
+
+        GradientTask(TexelTuner tuner, int from, int to, double[] mid, double[] end) {
+            this.tuner = tuner;
+            this.from = from;
+            this.to = to;
+            this.mid = mid;
+            this.end = end;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from > SPLIT) {
+                int half = (from + to) >>> 1;
+                GradientTask left = new GradientTask(tuner, from, half, mid, end);
+                left.fork();
+                double[] right = new GradientTask(tuner, half, to, mid, end).compute();
+                double[] sum = left.join();
+                for (int i = 0; i < sum.length; i++) sum[i] += right[i];
+                return sum;
+            }
+            TexelTuner t = tuner;
+            double[] gradient = new double[2 * CELLS + 1];
+            for (int i = from; i < to; i++) {
+                double s = sigmoid(t.k, t.evaluate(i, mid, end));
+                double e = t.result[i] / 2. - s;
+                gradient[2 * CELLS] += e * e;
+                // d error / d score
+                double d = -2 * e * t.k * s * (1 - s);
+                double dMid = d * t.phase[i] / Material.MAX_PHASE;
+                double dEnd = d - dMid;
+                for (int j = t.start[i]; j < t.start[i + 1]; j++) {
+                    int cell = t.pieces[j];
+                    double sign = (cell < PESTO.BLACK_ROW * BOARD_SIZE) ? 1 : -1;
+                    gradient[cell] += sign * dMid;
+                    gradient[CELLS + cell] += sign * dEnd;
+                }
+            }
+            return gradient;
+        }
+    }
+
+    /**
+     * @param gradient receives the mean gradient of the error over the parameters
+     * @return mean squared error
+     */
+    double gradient(ForkJoinPool pool, double[] gradient) {
+        double[] mid = new double[CELLS], end = new double[CELLS];
+        cells(mid, end);
+        double[] g = pool.invoke(new GradientTask(this, 0, size, mid, end));
+        Arrays.fill(gradient, 0);
+        // every cell is a piece value plus a square of its table, see cells
+        for (int pc = 0; pc < PIECES; pc++) {
+            for (int sq = 0; sq < BOARD_SIZE; sq++) {
+                int w = pc * BOARD_SIZE + sq;
+                int b = (PESTO.BLACK_ROW + pc) * BOARD_SIZE + sq;
+                gradient[MID_VAL + pc] += g[w] + g[b];
+                gradient[END_VAL + pc] += g[CELLS + w] + g[CELLS + b];
+                gradient[MID_TABLE + pc * BOARD_SIZE + (sq ^ 56)] += g[w];
+                gradient[END_TABLE + pc * BOARD_SIZE + (sq ^ 56)] += g[CELLS + w];
+                gradient[MID_TABLE + pc * BOARD_SIZE + sq] += g[b];
+                gradient[END_TABLE + pc * BOARD_SIZE + sq] += g[CELLS + b];
+            }
+        }
+        // both kings are always on the board, their value cancels out
+        gradient[MID_VAL + PIECES - 1] = 0;
+        gradient[END_VAL + PIECES - 1] = 0;
+        for (int i = 0; i < PARAMS; i++) gradient[i] /= Math.max(1, size);
+        return g[2 * CELLS] / Math.max(1, size);
+    }
+
+    /**
+     * Adam on the mean squared error
+     * @param rate       step size in centipawns
+     * @param iterations passes over the positions
+     * @param listener   called every 10 iterations with the iteration and the error, may be null
+     */
+    public void tune(ForkJoinPool pool, double rate, int iterations, ObjIntConsumer<Double> listener) {
+        final double beta1 = 0.9, beta2 = 0.999, epsilon = 1e-8;
+        double[] gradient = new double[PARAMS];
+        double[] m = new double[PARAMS];
+        double[] v = new double[PARAMS];
+        for (int t = 1; t <= iterations; t++) {
+            double error = gradient(pool, gradient);
+            for (int i = 0; i < PARAMS; i++) {
+                m[i] = beta1 * m[i] + (1 - beta1) * gradient[i];
+                v[i] = beta2 * v[i] + (1 - beta2) * gradient[i] * gradient[i];
+                double mHat = m[i] / (1 - Math.pow(beta1, t));
+                double vHat = v[i] / (1 - Math.pow(beta2, t));
+                params[i] -= rate * mHat / (Math.sqrt(vHat) + epsilon);
+            }
+            if (listener != null && (t % 10 == 0 || t == iterations)) listener.accept(error, t);
+        }
+    }
+
+    /**
+     * @return PESTO with the parameters rounded to centipawns
+     */
+    public PESTO toPESTO() {
+        int[] midVal = new int[PIECES], endVal = new int[PIECES];
+        int[][] midTables = new int[PIECES][BOARD_SIZE], endTables = new int[PIECES][BOARD_SIZE];
+        for (int pc = 0; pc < PIECES; pc++) {
+            midVal[pc] = (int) Math.round(params[MID_VAL + pc]);
+            endVal[pc] = (int) Math.round(params[END_VAL + pc]);
+            for (int sq = 0; sq < BOARD_SIZE; sq++) {
+                midTables[pc][sq] = (int) Math.round(params[MID_TABLE + pc * BOARD_SIZE + sq]);
+                endTables[pc][sq] = (int) Math.round(params[END_TABLE + pc * BOARD_SIZE + sq]);
+            }
+        }
+        return new PESTO(midVal, endVal, midTables, endTables);
+    }
+
+    // args: positions file, output table file, [iterations] [rate] [initial table file]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: TexelTuner <positions> <output tables> [iterations] [rate] [initial tables]");
+            return;
+        }
+        int iterations = (args.length > 2) ? Integer.parseInt(args[2]) : 500;
+        double rate = (args.length > 3) ? Double.parseDouble(args[3]) : 1.0;
+        PESTO initial = (args.length > 4) ? PESTO.load(Paths.get(args[4])) : PESTO.getInstance();
+        Path output = Paths.get(args[1]);
+
+        TexelTuner tuner = new TexelTuner(initial);
+        long st = System.nanoTime();
+        tuner.load(Paths.get(args[0]));
+        System.out.printf("%d positions, %d lines skipped, %d ms%n", tuner.size, tuner.skipped,
+                (System.nanoTime() - st) / 1_000_000);
+        System.out.printf("K %.6f, error %.6f%n", tuner.fitK(), tuner.error(tuner.k));
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        tuner.tune(pool, rate, iterations, (error, t) -> {
+            System.out.printf("iteration %d\terror %.6f%n", t, error);
+            if (t % 100 == 0) save(tuner, output, t, error);
+        });
+        double error = tuner.error(tuner.k);
+        save(tuner, output, iterations, error);
+        System.out.printf("error %.6f, tables written to %s%n", error, output);
+    }
+
+    static void save(TexelTuner tuner, Path output, int iterations, double error) {
+        try {
+            tuner.toPESTO().save(output, String.format("Texel tuned, %d positions, K %.6f, %d iterations, error %.6f",
+                    tuner.size, tuner.k, iterations, error));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write " + output, e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.fehinti.engine;
+
+/*
+ * Time allocation for one move under a tournament clock. From wtime, btime, winc, binc and
+ * movestogo (UCI go parameters, milliseconds) it computes two budgets from the start of the move:
+ *   soft  when to stop starting new iterations, scaled after every iteration: longer when the best
+ *         move just changed or the score dropped, shorter while the best move stays the same
+ *   hard  when a running iteration is abandoned, never above a fixed share of the clock
+ * The search asks hardExpired() every POLL_NODES nodes so System.nanoTime() stays off the hot path.
+ * One TimeManager per move, it keeps the iteration history of that move only.
+ */
+public class TimeManager {
+
+    public static final int POLL_NODES = 1024; // power of two, the search polls when nodes % POLL_NODES == 0
+    static final int DEFAULT_MOVES_TO_GO = 30; // sudden death, assume this many moves are left
+    static final long MOVE_OVERHEAD = 30; // ms kept for the GUI and the transmission of the move
+    static final long MIN_TIME = 1; // ms
+
+    static final double UNSTABLE = 1.5; // soft budget factor right after the best move changed
+    static final double STABLE = 0.5; // lowest factor, reached after a few iterations with the same move
+    static final double STABILITY_STEP = 0.2; // factor taken off per iteration with the same best move
+    static final int SCORE_DROP = 30; // cp, a drop this large gets more time
+    static final double SCORE_DROP_FACTOR = 1.4;
+
+    private final long start;
+    private final long soft; // ns
+    private final long hard; // ns
+    private int bestMove;
+    private int stableIterations;
+    private int lastScore;
+    private boolean started;
+
+    TimeManager(long start, long softMillis, long hardMillis) {
+        if (softMillis < 0 || hardMillis < softMillis)
+            throw new IllegalArgumentException("Invalid budget soft " + softMillis + " hard " + hardMillis);
+        this.start = start;
+        this.soft = softMillis * 1_000_000;
+        this.hard = hardMillis * 1_000_000;
+    }
+
+    /**
+     * @param white      side to move
+     * @param movesToGo  moves to the next time control, 0 for sudden death
+     */
+    public static TimeManager forClock(boolean white, long wtime, long btime, long winc, long binc, int movesToGo) {
+        long time = white ? wtime : btime;
+        long inc = white ? winc : binc;
+        if (time < 0 || inc < 0 || movesToGo < 0)
+            throw new IllegalArgumentException("Invalid clock " + time + "+" + inc + " moves to go " + movesToGo);
+        long remaining = Math.max(MIN_TIME, time - MOVE_OVERHEAD);
+        int moves = (movesToGo > 0) ? movesToGo : DEFAULT_MOVES_TO_GO;
+        long soft = remaining / moves + inc * 3 / 4;
+        // a single move to the time control may use most of the clock, otherwise keep a reserve
+        long cap = (moves == 1) ? remaining * 9 / 10 : remaining * 4 / 10;
+        long hard = Math.max(MIN_TIME, Math.min(soft * 5, cap));
+        return new TimeManager(System.nanoTime(), Math.max(MIN_TIME, Math.min(soft, hard)), hard);
+    }
+
+    /**
+     * go movetime, the whole budget is spent
+     */
+    public static TimeManager fixed(long millis) {
+        long budget = Math.max(MIN_TIME, millis - MOVE_OVERHEAD);
+        return new TimeManager(System.nanoTime(), budget, budget);
+    }
+
+    public long getSoftMillis() {
+        return soft / 1_000_000;
+    }
+
+    public long getHardMillis() {
+        return hard / 1_000_000;
+    }
+
+    public long elapsedMillis() {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    public boolean hardExpired() {
+        return System.nanoTime() - start >= hard;
+    }
+
+    /**
+     * called after every completed iteration
+     *
+     * @return whether to start the next iteration
+     */
+    public boolean nextIteration(int move, int score) {
+        return nextIteration(move, score, System.nanoTime() - start);
+    }
+
+    boolean nextIteration(int move, int score, long elapsed) {
+        return elapsed < budget(move, score);
+    }
+
+    // soft budget in ns after an iteration that returned move and score
+    long budget(int move, int score) {
+        if (started && move == bestMove) stableIterations++;
+        else stableIterations = 0;
+        double factor = Math.max(STABLE, UNSTABLE - stableIterations * STABILITY_STEP);
+        if (started && lastScore - score >= SCORE_DROP) factor *= SCORE_DROP_FACTOR;
+        started = true;
+        bestMove = move;
+        lastScore = score;
+        return Math.min(hard, (long) (soft * factor));
+    }
+}
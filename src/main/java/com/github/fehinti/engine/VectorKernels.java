@@ -0,0 +1,74 @@
+package com.github.fehinti.engine;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * SIMD versions of the Kernels, written with the incubating Vector API at the preferred
+ * vector size of the machine (256 bits on AVX2). Lanes left over at the end of an array are
+ * handled by the scalar loops. Only reached through Kernels when the module is available.
+ */
+final class VectorKernels {
+
+    static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    // int lanes of the same total size: a short vector widens into 2 int vectors
+    static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final short QA = (short) NNUE.QA;
+
+    private VectorKernels() {
+    }
+
+    static void addColumn(short[] acc, int offset, short[] weights, int column, int hidden) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(hidden); i < bound; i += SHORTS.length()) {
+            ShortVector a = ShortVector.fromArray(SHORTS, acc, offset + i);
+            a.add(ShortVector.fromArray(SHORTS, weights, column + i)).intoArray(acc, offset + i);
+        }
+        for (; i < hidden; i++) acc[offset + i] += weights[column + i];
+    }
+
+    static void subColumn(short[] acc, int offset, short[] weights, int column, int hidden) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(hidden); i < bound; i += SHORTS.length()) {
+            ShortVector a = ShortVector.fromArray(SHORTS, acc, offset + i);
+            a.sub(ShortVector.fromArray(SHORTS, weights, column + i)).intoArray(acc, offset + i);
+        }
+        for (; i < hidden; i++) acc[offset + i] -= weights[column + i];
+    }
+
+    static int creluDot(short[] acc, int offset, short[] weights, int wOffset, int hidden) {
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = SHORTS.loopBound(hidden); i < bound; i += SHORTS.length()) {
+            ShortVector a = ShortVector.fromArray(SHORTS, acc, offset + i).max((short) 0).min(QA);
+            ShortVector w = ShortVector.fromArray(SHORTS, weights, wOffset + i);
+            // products need 32 bits, widen both halves before multiplying
+            for (int part = 0; part < 2; part++) {
+                IntVector av = (IntVector) a.convertShape(VectorOperators.S2I, INTS, part);
+                IntVector wv = (IntVector) w.convertShape(VectorOperators.S2I, INTS, part);
+                sum = sum.add(av.mul(wv));
+            }
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < hidden; i++) {
+            int v = Math.min(Math.max(acc[offset + i], 0), NNUE.QA);
+            result += v * weights[wOffset + i];
+        }
+        return result;
+    }
+
+    static int pieceListSum(int[] table, int[] pieceLists) {
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        // gathers range check every lane, masked or not: with the table offset by one an empty slot
+        // (OFF_BOARD) reads the zero at table[0] instead of being masked off
+        for (int bound = INTS.loopBound(pieceLists.length); i < bound; i += INTS.length()) {
+            sum = sum.add(IntVector.fromArray(INTS, table, 1, pieceLists, i));
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < pieceLists.length; i++) result += table[pieceLists[i] + 1];
+        return result;
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.fehinti.perft;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.engine.JfrEvents;
+import com.github.fehinti.piece.Move;
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+
+/***********************************************************************************
+ * Perft using copy-make instead of make/unmake. Every ply owns a preallocated
+ * board (slot), a child position is made by copying the parent slot into the next
+ * slot and playing the move there, the parent is never modified. Since no board is
+ * shared between plies, root moves can be split across threads, each thread with
+ * its own slots.
+ * Running main compares make/unmake, copy-make and parallel copy-make on the same
+ * position (default: start position, depth 6).
+ **********************************************************************************/
+public class CopyMakePerft {
+
+    static final int DEFAULT_DEPTH = 6;
+
+    /**
+     * @param root  position to copy into slot 0
+     * @param depth number of plies searched below the root
+     * @return one board per ply, depth + 1 in total
+     */
+    static Board120[] newSlots(Board120 root, int depth) {
+        Board120[] slots = new Board120[depth + 1];
+        for (int i = 0; i <= depth; i++) slots[i] = new Board120(root);
+        return slots;
+    }
+
+    static long perft(Board120[] slots, int ply, int depth) {
+        if (depth == 0) return 1;
+        Board120 parent = slots[ply];
+        Board120 child = slots[ply + 1];
+        List<Integer> moveList = MoveGenerator.generatePseudoLegal(parent);
+        long nodes = 0L;
+        for (int i = 0, n = moveList.size(); i < n; i++) {
+            Board120.copyMake(parent, moveList.get(i), child);
+            if (!VectorAttack120.isKingInCheck(child)) nodes += perft(slots, ply + 1, depth - 1);
+        }
+        return nodes;
+    }
+
+    /**
+     * root moves are distributed over the common fork join pool, every task copies the root into
+     * slots owned by the thread running it.
+     */
+    static long parallelPerft(Board120 root, int depth) {
+        if (depth == 0) return 1;
+        ThreadLocal<Board120[]> slots = ThreadLocal.withInitial(() -> newSlots(root, depth));
+        return MoveGenerator.generatePseudoLegal(root).parallelStream().mapToLong(move -> {
+            Board120[] local = slots.get();
+            Board120.copyMake(root, move, local[1]);
+            if (VectorAttack120.isKingInCheck(local[1])) return 0L;
+            PerftRootMoveEvent event = JfrEvents.ENABLED ? new PerftRootMoveEvent() : null;
+            if (event != null) event.begin();
+            long nodes = perft(local, 1, depth - 1);
+            if (event != null) PerftRootMoveEvent.commit(event, Move.printMove(move), depth - 1, nodes);
+            return nodes;
+        }).sum();
+    }
+
+    static long makeUnmakePerft(Board120 board, int depth) {
+        if (depth == 0) return 1;
+        List<Integer> moveList = MoveGenerator.generatePseudoLegal(board);
+        long nodes = 0L;
+        for (int i = 0, n = moveList.size(); i < n; i++) {
+            int move = moveList.get(i);
+            board.make(move);
+            if (!VectorAttack120.isKingInCheck(board)) nodes += makeUnmakePerft(board, depth - 1);
+            board.unmake(move);
+        }
+        return nodes;
+    }
+
+    static void benchmark(String name, LongSupplier perft) {
+        Instant st = Instant.now();
+        long nodes = perft.getAsLong();
+        long millis = Math.max(1, Duration.between(st, Instant.now()).toMillis());
+        System.out.printf("%-20s nodes %d\t%d ms\t%d nps%n", name, nodes, millis, nodes * 1000 / millis);
+    }
+
+    // args: [depth] [fen]
+    public static void main(String[] args) {
+        int depth = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+        Board120 root = (args.length > 1) ? FENParser.parseFENotation120(args[1]) : FENParser.startPos120();
+        System.out.println(root.print8x8());
+        System.out.println("go perft " + depth);
+
+        Board120 board = new Board120(root);
+        benchmark("make/unmake", () -> makeUnmakePerft(board, depth));
+        Board120[] slots = newSlots(root, depth);
+        benchmark("copy-make", () -> perft(slots, 0, depth));
+        benchmark("parallel copy-make", () -> parallelPerft(root, depth));
+    }
+}
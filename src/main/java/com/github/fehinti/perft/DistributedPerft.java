@@ -0,0 +1,185 @@
+package com.github.fehinti.perft;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+
+/***********************************************************************************
+ * Perft spread over worker JVMs. The coordinator walks the tree down to the split
+ * depth and turns every position found there into a work unit (FEN + remaining
+ * depth); positions reached by several move orders are merged into one unit with a
+ * multiplicity. Each worker is a child process started with this class, it talks to
+ * the coordinator over its stdin/stdout pipes, one line per message:
+ *   coordinator -> worker   <id> <depth> <fen>     (quit to end)
+ *   worker -> coordinator   <id> <nodes>
+ * A coordinator thread per worker hands out units one at a time from a shared queue,
+ * so a worker that finishes early takes the next unit. The total is the sum of the
+ * unit counts times their multiplicity.
+ * Run "DistributedPerft worker" to start a worker by hand.
+ **********************************************************************************/
+public class DistributedPerft {
+
+    static final String WORKER = "worker";
+    static final String QUIT = "quit";
+
+    record Unit(int id, String fen, long multiplicity) {
+    }
+
+    private final int workers;
+    private final List<String> command;
+
+    /**
+     * @param workers number of worker processes, started for every run
+     */
+    public DistributedPerft(int workers) {
+        this(workers, defaultCommand());
+    }
+
+    /**
+     * @param command command line starting one worker
+     */
+    public DistributedPerft(int workers, List<String> command) {
+        if (workers <= 0) throw new IllegalArgumentException("Invalid worker count " + workers);
+        this.workers = workers;
+        this.command = List.copyOf(command);
+    }
+
+    // same java and class path as this JVM
+    static List<String> defaultCommand() {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return List.of(java, "-cp", System.getProperty("java.class.path"), DistributedPerft.class.getName(), WORKER);
+    }
+
+    /**
+     * @return the positions at splitDepth plies below board with the number of move paths reaching each
+     */
+    static Map<String, Long> split(Board120 board, int splitDepth) {
+        Map<String, Long> positions = new LinkedHashMap<>();
+        split(board, splitDepth, positions);
+        return positions;
+    }
+
+    private static void split(Board120 board, int depth, Map<String, Long> positions) {
+        if (depth == 0) {
+            // the move counters do not change the count, leaving them out merges more transpositions
+            String[] fields = FENParser.getFENotation(board).split(" ");
+            String key = String.join(" ", fields[0], fields[1], fields[2], fields[3]) + " 0 1";
+            positions.merge(key, 1L, Long::sum);
+            return;
+        }
+        for (int move : PerftCheckpoint.legalMoves(board)) {
+            board.make(move);
+            split(board, depth - 1, positions);
+            board.unmake(move);
+        }
+    }
+
+    public long perft(String fen, int depth, int splitDepth) throws IOException, InterruptedException {
+        if (depth < 0 || splitDepth < 0) throw new IllegalArgumentException("Invalid depth " + depth);
+        Board120 board = FENParser.parseFENotation120(fen);
+        if (splitDepth >= depth) return PerftStats.count(board, depth);
+
+        ConcurrentLinkedQueue<Unit> units = new ConcurrentLinkedQueue<>();
+        int id = 0;
+        for (Map.Entry<String, Long> position : split(board, splitDepth).entrySet()) {
+            units.add(new Unit(id++, position.getKey(), position.getValue()));
+        }
+        int remaining = depth - splitDepth;
+        AtomicLong nodes = new AtomicLong();
+        Exception[] failure = new Exception[1]; // IOException, or a RuntimeException on a malformed reply
+
+        List<Process> processes = new ArrayList<>(workers);
+        List<Thread> threads = new ArrayList<>(workers);
+        try {
+            for (int i = 0; i < Math.min(workers, id); i++) {
+                Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                processes.add(process);
+                Thread thread = new Thread(() -> {
+                    try {
+                        feed(process, units, remaining, nodes);
+                    } catch (IOException | RuntimeException e) {
+                        synchronized (failure) {
+                            if (failure[0] == null) failure[0] = e;
+                        }
+                        units.clear(); // the other workers stop after their current unit
+                    }
+                }, "perft-coordinator-" + i);
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) thread.join();
+        } finally {
+            for (Process process : processes) process.destroy();
+        }
+        if (failure[0] instanceof IOException e) throw e;
+        if (failure[0] instanceof RuntimeException e) throw e;
+        return nodes.get();
+    }
+
+    // hands units to one worker until the queue is empty
+    private static void feed(Process process, ConcurrentLinkedQueue<Unit> units, int depth, AtomicLong nodes)
+            throws IOException {
+        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+        BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        for (Unit unit = units.poll(); unit != null; unit = units.poll()) {
+            bw.write(unit.id() + " " + depth + " " + unit.fen());
+            bw.newLine();
+            bw.flush();
+            String line = br.readLine();
+            if (line == null) throw new IOException("Worker exited during unit " + unit.id() + ": " + unit.fen());
+            String[] reply = line.split(" ");
+            if (reply.length != 2 || Integer.parseInt(reply[0]) != unit.id())
+                throw new IOException("Unexpected reply to unit " + unit.id() + ": " + line);
+            nodes.addAndGet(Long.parseLong(reply[1]) * unit.multiplicity());
+        }
+        bw.write(QUIT);
+        bw.newLine();
+        bw.flush();
+    }
+
+    /**
+     * worker loop, answers every unit read from in until quit or end of input
+     */
+    static void work(BufferedReader in, BufferedWriter out) throws IOException {
+        for (String line = in.readLine(); line != null && !line.equals(QUIT); line = in.readLine()) {
+            String[] fields = line.split(" ", 3);
+            if (fields.length != 3) throw new IllegalArgumentException("Invalid work unit " + line);
+            Board120 board = FENParser.parseFENotation120(fields[2]);
+            long nodes = PerftStats.count(board, Integer.parseInt(fields[1]));
+            out.write(fields[0] + " " + nodes);
+            out.newLine();
+            out.flush();
+        }
+    }
+
+    // args: worker | [depth] [fen] [split depth] [workers]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals(WORKER)) {
+            work(new BufferedReader(new InputStreamReader(System.in)),
+                    new BufferedWriter(new OutputStreamWriter(System.out)));
+            return;
+        }
+        int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 6;
+        String fen = (args.length > 1) ? args[1] : FENParser.getFENotation(FENParser.startPos120());
+        int splitDepth = (args.length > 2) ? Integer.parseInt(args[2]) : Math.min(2, depth);
+        int workers = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        long st = System.nanoTime();
+        long nodes = new DistributedPerft(workers).perft(fen, depth, splitDepth);
+        long millis = Math.max(1, (System.nanoTime() - st) / 1_000_000);
+        System.out.printf("go perft %d split %d%nnodes %d\t%d ms\t%d nps\t%d workers%n", depth, splitDepth, nodes,
+                millis, nodes * 1000 / millis, workers);
+    }
+}
@@ -16,6 +16,7 @@ import java.util.Arrays;
 import com.github.fehinti.board.Board120;
 import com.github.fehinti.piece.Move;
 import com.github.fehinti.board.FENParser;
+import com.github.fehinti.board.ZobristHash;
 import com.github.fehinti.piece.MoveGenerator;
 import com.github.fehinti.piece.VectorAttack120;
 
@@ -34,7 +35,7 @@ import com.github.fehinti.piece.VectorAttack120;
  **********************************************************************************/
 public class Perft {
    static Board120 board;
-   static String FILEPATH = "src\\main\\java\\com\\github\\fehinti\\perft\\dummy1.txt";
+   static String FILEPATH = "src/main/java/com/github/fehinti/perft/dummy1.txt";
    static File file;
    static BufferedWriter bufferedWriter;
    static int COUNT = 0;
@@ -42,6 +43,10 @@ public class Perft {
    static long EnP = 0;
    static long castles = 0;
    static long CAPTURE = 0;
+   // run with -Dperft.verifyHash=true to check the incremental zobrist key against a full
+   // recomputation after every make and unmake, this is slow and only meant for debugging
+   static final boolean VERIFY_HASH = Boolean.getBoolean("perft.verifyHash");
+   static long HASH_CHECKS = 0;
 
    static {
        board = FENParser.parseFENotation120("r1k1r2q/p1ppp1pp/8/8/8/8/P1PPP1PP/R1K1R2Q w KQkq - 0 1");
@@ -103,6 +108,7 @@ public class Perft {
            move = moveList.get(i);
            // System.out.println("-------------------------------------------\n\t" + Move.printMove(move));
            board.make(move);
+           if (VERIFY_HASH) verifyHash(move, "make");
           //System.out.println(board.print8x8() + "\n" + board.getBoardData());
           //writeFENToFile(FENParser.getFENotation(board) + "\t" + (board.lastEntry & 0xff) + "\t"
           //+ (board.lastEntry >> 8 & 0xff));
@@ -129,6 +135,7 @@ public class Perft {
                nodes += nodeCount;
            }
            board.unmake(move);
+           if (VERIFY_HASH) verifyHash(move, "unmake");
            if (currentDepth == originalDepth) {
                strList.add(Move.printMove(move) + ": " + nodeCount);
            }
@@ -136,6 +143,16 @@ public class Perft {
        return nodes;
    }
 
+   static void verifyHash(int move, String phase) {
+       long expected = ZobristHash.hashAtInit(board);
+       HASH_CHECKS++;
+       if (board.getZobristKey() != expected) {
+           throw new IllegalStateException("zobrist key mismatch after " + phase + " " + Move.printMove(move)
+                   + "\n" + FENParser.getFENotation(board) + "\nincremental: " + board.getZobristKey()
+                   + "\nexpected: " + expected);
+       }
+   }
+
    static void closeWriter() {
        if (bufferedWriter != null) {
            try {
@@ -171,6 +188,7 @@ public class Perft {
         System.out.println("Checks: " + CHECKS);
         System.out.println("Enpassant " + EnP);
         System.out.println("Castles: " + castles);
+        if (VERIFY_HASH) System.out.println("Zobrist keys verified: " + HASH_CHECKS);
    //     long total = pseudoPerformanceTest(depth);
         closeWriter();
     }
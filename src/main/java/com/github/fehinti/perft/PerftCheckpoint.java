@@ -0,0 +1,195 @@
+package com.github.fehinti.perft;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.engine.JfrEvents;
+import com.github.fehinti.piece.Move;
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+
+/***********************************************************************************
+ * Perft that survives a crash or a redeploy. Every finished subtree is appended to a
+ * small text checkpoint file and synced to disk, a restarted run reads the file back
+ * and only searches what is missing. Subtrees are the root moves and, optionally, the
+ * replies to every root move so a long root move does not have to start over either.
+ * File layout, one entry per line:
+ *   perft <depth> <fen>          first line, a checkpoint only resumes the same run
+ *   <move> <nodes>               root move done
+ *   <move> <reply> <nodes>       second level subtree done
+ * moves in coordinate notation (e2e4). A line cut short by a crash is cut off the file.
+ * Root moves are searched in parallel, each task on its own copy of the root.
+ **********************************************************************************/
+public class PerftCheckpoint {
+
+    static final String HEADER = "perft";
+
+    private final Path file;
+    private final Board120 root;
+    private final String fen;
+    private final int depth;
+    private final boolean splitReplies;
+    private final Map<String, Long> done = new ConcurrentHashMap<>();
+    private FileOutputStream out;
+    private long resumed; // entries read back from the file
+
+    /**
+     * @param splitReplies also checkpoint the subtree of every reply to a root move
+     */
+    public PerftCheckpoint(Path file, String fen, int depth, boolean splitReplies) {
+        if (depth < 1) throw new IllegalArgumentException("Invalid depth " + depth);
+        this.file = file;
+        this.root = FENParser.parseFENotation120(fen);
+        this.fen = FENParser.getFENotation(root);
+        this.depth = depth;
+        this.splitReplies = splitReplies && depth > 2;
+    }
+
+    public long getResumed() {
+        return resumed;
+    }
+
+    /**
+     * @return subtotal of every legal root move, in move generation order
+     */
+    public List<String> run(int threads) throws IOException {
+        open();
+        try {
+            List<Integer> rootMoves = legalMoves(root);
+            long[] counts = new long[rootMoves.size()];
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.submit(() -> IntStream.range(0, rootMoves.size()).parallel()
+                        .forEach(i -> counts[i] = rootMove(rootMoves.get(i)))).join();
+            } finally {
+                pool.shutdown();
+            }
+            List<String> divide = new ArrayList<>(rootMoves.size());
+            for (int i = 0; i < counts.length; i++) divide.add(Move.printMove(rootMoves.get(i)) + ": " + counts[i]);
+            return divide;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            out.close();
+        }
+    }
+
+    private long rootMove(int move) {
+        String key = Move.printMove(move);
+        Long known = done.get(key);
+        if (known != null) return known;
+        PerftRootMoveEvent event = JfrEvents.ENABLED ? new PerftRootMoveEvent() : null;
+        if (event != null) event.begin();
+        Board120 board = new Board120(root);
+        board.make(move);
+        long nodes = 0;
+        if (!splitReplies) nodes = PerftStats.count(board, depth - 1);
+        else {
+            for (int reply : legalMoves(board)) {
+                String replyKey = key + " " + Move.printMove(reply);
+                Long sub = done.get(replyKey);
+                if (sub == null) {
+                    board.make(reply);
+                    sub = PerftStats.count(board, depth - 2);
+                    board.unmake(reply);
+                    append(replyKey, sub);
+                }
+                nodes += sub;
+            }
+        }
+        append(key, nodes);
+        if (event != null) PerftRootMoveEvent.commit(event, key, depth - 1, nodes);
+        return nodes;
+    }
+
+    static List<Integer> legalMoves(Board120 board) {
+        List<Integer> legal = new ArrayList<>();
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            board.make(move);
+            if (!VectorAttack120.isKingInCheck(board)) legal.add(move);
+            board.unmake(move);
+        }
+        return legal;
+    }
+
+    // reads back the entries of an earlier run of the same perft, or starts a new file
+    private void open() throws IOException {
+        String header = HEADER + " " + depth + " " + fen;
+        byte[] bytes = Files.exists(file) ? Files.readAllBytes(file) : new byte[0];
+        int end = bytes.length; // up to the last complete line
+        while (end > 0 && bytes[end - 1] != '\n') end--;
+        String first = new String(bytes, StandardCharsets.UTF_8).split("\n", 2)[0];
+        if (end > 0 ? !first.equals(header) : !header.startsWith(first))
+            throw new IllegalArgumentException("Checkpoint " + file + " belongs to another run: " + first);
+        if (end > 0) {
+            List<String> lines = List.of(new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n"));
+            for (int i = 1; i < lines.size(); i++) {
+                String[] fields = lines.get(i).trim().split(" ");
+                if (fields.length < 2 || fields.length > 3) continue;
+                try {
+                    long nodes = Long.parseLong(fields[fields.length - 1]);
+                    String key = (fields.length == 2) ? fields[0] : fields[0] + " " + fields[1];
+                    done.put(key, nodes);
+                    resumed++;
+                } catch (NumberFormatException e) {
+                    // torn or foreign line
+                }
+            }
+        }
+        out = new FileOutputStream(file.toFile(), true);
+        // drop a torn last line, or a torn header, so the next entry starts on a line of its own
+        if (out.getChannel().size() > end) out.getChannel().truncate(end);
+        if (end == 0) write(header);
+    }
+
+    private synchronized void append(String key, long nodes) {
+        done.put(key, nodes);
+        try {
+            write(key + " " + nodes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        out.getFD().sync();
+    }
+
+    // args: checkpoint file, depth, [fen] [threads] [split replies true/false]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: PerftCheckpoint <checkpoint file> <depth> [fen] [threads] [split replies]");
+            return;
+        }
+        int depth = Integer.parseInt(args[1]);
+        String fen = (args.length > 2) ? args[2] : FENParser.getFENotation(FENParser.startPos120());
+        int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        boolean split = args.length <= 4 || Boolean.parseBoolean(args[4]);
+
+        PerftCheckpoint perft = new PerftCheckpoint(Paths.get(args[0]), fen, depth, split);
+        long st = System.nanoTime();
+        List<String> divide = perft.run(threads);
+        long total = 0;
+        for (String line : divide) {
+            System.out.println(line);
+            total += Long.parseLong(line.substring(line.indexOf(": ") + 2));
+        }
+        long millis = Math.max(1, (System.nanoTime() - st) / 1_000_000);
+        System.out.printf("go perft %d%ntotal %d\t%d ms\t%d entries resumed from %s%n", depth, total, millis,
+                perft.getResumed(), args[0]);
+    }
+}
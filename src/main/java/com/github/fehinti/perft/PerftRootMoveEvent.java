@@ -0,0 +1,35 @@
+package com.github.fehinti.perft;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * JFR event of a perft root move subtree completed, its duration is the time spent on the subtree.
+ * Created only when JfrEvents.ENABLED, as the engine events.
+ */
+@Name("com.github.fehinti.PerftRootMove")
+@Label("Perft Root Move")
+@Category({ "Chess", "Perft" })
+class PerftRootMoveEvent extends Event {
+
+    @Label("Move")
+    String move;
+
+    @Label("Depth")
+    @Description("Plies below the root move")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    static void commit(PerftRootMoveEvent event, String move, int depth, long nodes) {
+        if (!event.shouldCommit()) return;
+        event.move = move;
+        event.depth = depth;
+        event.nodes = nodes;
+        event.commit();
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.fehinti.perft;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.piece.Move;
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+
+import static com.github.fehinti.board.Board120Utils.*;
+
+/***********************************************************************************
+ * Perft with the leaf statistics of the chessprogramming wiki perft tables:
+ * captures, en passant, castles, promotions, checks, discovered checks, double
+ * checks and checkmates, all counted on the moves made at the last ply.
+ * There are two separate walks so the counters cost nothing when they are not
+ * wanted: count() is the plain walk with bulk counting (the last ply only checks
+ * that each move is legal, there is no call for the leaf), stats() is the same walk
+ * with a Stats object updated at the last ply.
+ **********************************************************************************/
+public class PerftStats {
+
+    /**
+     * leaf counts of a single perft run
+     */
+    public static final class Stats {
+        long nodes;
+        long captures;
+        long enPassant;
+        long castles;
+        long promotions;
+        long checks;
+        long discoveredChecks;
+        long doubleChecks;
+        long checkmates;
+        // scratch for the checking pieces' squares
+        final int[] checkers = new int[MAX_LEN_16];
+
+        public long[] toArray() {
+            return new long[] { nodes, captures, enPassant, castles, promotions, checks, discoveredChecks,
+                    doubleChecks, checkmates };
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%12d %10d %8d %9d %11d %9d %10d %7d %10d", nodes, captures, enPassant, castles,
+                    promotions, checks, discoveredChecks, doubleChecks, checkmates);
+        }
+    }
+
+    static final String HEADER = String.format("%5s %12s %10s %8s %9s %11s %9s %10s %7s %10s", "Depth", "Nodes",
+            "Captures", "E.p.", "Castles", "Promotions", "Checks", "Discovery", "Double", "Checkmates");
+
+    /**
+     * @return leaf nodes, moves at the last ply are counted without being searched
+     */
+    public static long count(Board120 board, int depth) {
+        if (depth == 0) return 1;
+        List<Integer> moveList = MoveGenerator.generatePseudoLegal(board);
+        long nodes = 0L;
+        for (int i = 0, n = moveList.size(); i < n; i++) {
+            int move = moveList.get(i);
+            board.make(move);
+            if (!VectorAttack120.isKingInCheck(board)) nodes += (depth == 1) ? 1 : count(board, depth - 1);
+            board.unmake(move);
+        }
+        return nodes;
+    }
+
+    /**
+     * @param stats receives the counts of this run, added to what is already there
+     * @return leaf nodes
+     */
+    public static long stats(Board120 board, int depth, Stats stats) {
+        if (depth == 0) {
+            stats.nodes++;
+            return 1;
+        }
+        List<Integer> moveList = MoveGenerator.generatePseudoLegal(board);
+        long nodes = 0L;
+        for (int i = 0, n = moveList.size(); i < n; i++) {
+            int move = moveList.get(i);
+            board.make(move);
+            if (!VectorAttack120.isKingInCheck(board)) {
+                if (depth == 1) {
+                    leaf(board, move, stats);
+                    nodes++;
+                } else nodes += stats(board, depth - 1, stats);
+            }
+            board.unmake(move);
+        }
+        return nodes;
+    }
+
+    // board is the position after move
+    private static void leaf(Board120 board, int move, Stats stats) {
+        stats.nodes++;
+        int flag = Move.getFlag(move);
+        switch (flag) {
+            case Move.FLAG_CAPTURE -> stats.captures++;
+            case Move.FLAG_EN_PASSANT -> { stats.captures++; stats.enPassant++; }
+            case Move.FLAG_CASTLE -> stats.castles++;
+            case Move.FLAG_PROMOTION -> stats.promotions++;
+            case Move.FLAG_PROMOTION_CAPTURE -> { stats.captures++; stats.promotions++; }
+            default -> { }
+        }
+        boolean side = board.getSideToMove();
+        int king = side ? board.getWhiteKingSq() : board.getBlackKingSq();
+        if (!VectorAttack120.isSquareChecked(board, side, king)) return;
+        stats.checks++;
+        int n = VectorAttack120.attackers(board, side, king, stats.checkers);
+        // as in the wiki tables a double check is not also counted as a discovered check
+        if (n > 1) stats.doubleChecks++;
+        else {
+            // a check from a piece that did not move, for castling the rook moved too
+            int to = Move.getTargetSquare(move);
+            int rookTo = (flag == Move.FLAG_CASTLE) ? castledRookSquare(to) : OFF_BOARD;
+            if (stats.checkers[0] != to && stats.checkers[0] != rookTo) stats.discoveredChecks++;
+        }
+        if (!hasLegalMove(board)) stats.checkmates++;
+    }
+
+    private static int castledRookSquare(int kingTo) {
+        if (kingTo == G1) return F1;
+        if (kingTo == C1) return D1;
+        if (kingTo == G8) return F8;
+        return D8;
+    }
+
+    private static boolean hasLegalMove(Board120 board) {
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            board.make(move);
+            boolean legal = !VectorAttack120.isKingInCheck(board);
+            board.unmake(move);
+            if (legal) return true;
+        }
+        return false;
+    }
+
+    static void benchmark(String name, LongSupplier perft) {
+        long st = System.nanoTime();
+        long nodes = perft.getAsLong();
+        long millis = Math.max(1, (System.nanoTime() - st) / 1_000_000);
+        System.out.printf("%-20s nodes %d\t%d ms\t%d nps%n", name, nodes, millis, nodes * 1000 / millis);
+    }
+
+    // args: [depth] [fen], prints the statistics table for depth 1..depth then compares the walks' speed
+    public static void main(String[] args) {
+        int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        Board120 board = (args.length > 1) ? FENParser.parseFENotation120(args[1]) : FENParser.startPos120();
+        System.out.println(FENParser.getFENotation(board));
+        System.out.println(HEADER);
+        for (int d = 1; d <= depth; d++) {
+            Stats stats = new Stats();
+            stats(board, d, stats);
+            System.out.printf("%5d %s%n", d, stats);
+        }
+        for (int warmup = 0; warmup < 2; warmup++) {
+            CopyMakePerft.makeUnmakePerft(board, depth - 1);
+            count(board, depth - 1);
+            stats(board, depth - 1, new Stats());
+        }
+        benchmark("make/unmake", () -> CopyMakePerft.makeUnmakePerft(board, depth));
+        benchmark("bulk counting", () -> count(board, depth));
+        benchmark("statistics", () -> stats(board, depth, new Stats()));
+    }
+}
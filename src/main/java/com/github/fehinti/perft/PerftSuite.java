@@ -0,0 +1,159 @@
+package com.github.fehinti.perft;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+
+/***********************************************************************************
+ * Perft regression runner, no external engine needed. Reads an EPD file where every
+ * line is a position followed by the expected leaf counts per depth:
+ *   rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 ;D1 20 ;D2 400 ;D3 8902
+ * Positions are verified concurrently on a fixed pool of threads, each task parses its
+ * own board. Depths are checked from 1 up to the deepest one not above the maximum
+ * depth, stopping at the first wrong count. Results print in file order with nodes
+ * per second, the exit status is 1 if a position failed.
+ **********************************************************************************/
+public class PerftSuite {
+
+    static final String DEFAULT_SUITE = "src/test/resources/perftsuite.epd";
+    static final int DEFAULT_MAX_DEPTH = 5;
+
+    /**
+     * @param expected expected[d] is the leaf count at depth d, -1 when the line does not give one
+     */
+    record Case(int line, String fen, long[] expected) {
+    }
+
+    /**
+     * @param depth deepest depth searched, the failing one if passed is false
+     */
+    record Outcome(Case position, boolean passed, int depth, long nodes, long expected, long totalNodes,
+                   long nanos, String error) {
+        long nps() {
+            return totalNodes * 1_000_000_000L / Math.max(1, nanos);
+        }
+    }
+
+    /**
+     * @return null for blank and comment lines
+     */
+    static Case parse(String text, int line) {
+        text = text.trim();
+        if (text.isEmpty() || text.startsWith("#")) return null;
+        String[] parts = text.split(";");
+        String fen = parts[0].trim();
+        if (fen.split("\\s+").length == 4) fen += " 0 1";
+        long[] expected = new long[1];
+        for (int i = 1; i < parts.length; i++) {
+            String[] op = parts[i].trim().split("\\s+");
+            if (op.length != 2 || op[0].length() < 2 || op[0].charAt(0) != 'D') continue; // other opcodes
+            int depth;
+            try {
+                depth = Integer.parseInt(op[0].substring(1));
+                if (depth <= 0) throw new NumberFormatException();
+                if (depth >= expected.length) {
+                    int from = expected.length;
+                    expected = Arrays.copyOf(expected, depth + 1);
+                    Arrays.fill(expected, from, depth + 1, -1L);
+                }
+                expected[depth] = Long.parseLong(op[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid depth " + parts[i].trim() + " on line " + line);
+            }
+        }
+        expected[0] = -1;
+        return new Case(line, fen, expected);
+    }
+
+    static Outcome verify(Case position, int maxDepth) {
+        long st = System.nanoTime();
+        long total = 0;
+        int depth = 0;
+        long nodes = 0, expected = 0;
+        try {
+            Board120 board = FENParser.parseFENotation120(position.fen());
+            int deepest = Math.min(maxDepth, position.expected().length - 1);
+            for (depth = 1; depth <= deepest; depth++) {
+                expected = position.expected()[depth];
+                if (expected < 0) continue;
+                nodes = CopyMakePerft.makeUnmakePerft(board, depth);
+                total += nodes;
+                if (nodes != expected) return new Outcome(position, false, depth, nodes, expected, total,
+                        System.nanoTime() - st, null);
+            }
+            depth = deepest;
+        } catch (RuntimeException e) {
+            return new Outcome(position, false, depth, nodes, expected, total, System.nanoTime() - st,
+                    e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+        return new Outcome(position, true, depth, nodes, expected, total, System.nanoTime() - st, null);
+    }
+
+    static String format(Outcome o) {
+        String status = o.passed() ? "PASS" : "FAIL";
+        String detail = (o.error() != null) ? o.error()
+                : String.format("D%d %d%s", o.depth(), o.nodes(), o.passed() ? "" : " expected " + o.expected());
+        return String.format("%4d %s  %-28s %7d ms %10d nps  %s", o.position().line(), status, detail,
+                o.nanos() / 1_000_000, o.nps(), o.position().fen());
+    }
+
+    /**
+     * @return number of failed positions
+     */
+    static int run(List<Case> cases, int maxDepth, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long st = System.nanoTime();
+        int failed = 0;
+        long nodes = 0;
+        try {
+            List<Future<Outcome>> results = new ArrayList<>(cases.size());
+            for (Case c : cases) results.add(pool.submit(() -> verify(c, maxDepth)));
+            for (Future<Outcome> result : results) {
+                Outcome outcome = result.get();
+                if (!outcome.passed()) failed++;
+                nodes += outcome.totalNodes();
+                System.out.println(format(outcome));
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        long millis = Math.max(1, (System.nanoTime() - st) / 1_000_000);
+        System.out.printf("%d positions, %d passed, %d failed, %d nodes, %d ms, %d nps, %d threads%n",
+                cases.size(), cases.size() - failed, failed, nodes, millis, nodes * 1000 / millis, threads);
+        return failed;
+    }
+
+    static List<Case> load(String path) throws IOException {
+        List<Case> cases = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path))) {
+            int n = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                Case c = parse(line, ++n);
+                if (c != null) cases.add(c);
+            }
+        }
+        return cases;
+    }
+
+    // args: [epd file] [max depth] [threads]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String path = (args.length > 0) ? args[0] : DEFAULT_SUITE;
+        int maxDepth = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_MAX_DEPTH;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int failed = run(load(path), maxDepth, threads);
+        if (failed > 0) System.exit(1);
+    }
+}
@@ -2,6 +2,8 @@ package com.github.fehinti.piece;
 
 import com.github.fehinti.board.Board120;
 
+import java.util.Arrays;
+
 
 public class Move {
     // .Move.encodeMove(from, to, newSquare, 0, com.github.fehinti.board.Move.FLAG_CAPTURE, index);
@@ -53,6 +55,93 @@ public class Move {
         return (move >> 16) & 0x7;
     }
 
+    // compact 16 bit encoding: from64 (6 bits) | to64 (6 bits) | flag (4 bits)
+    // promotions use flags 8..15: bit 3 set, bit 2 capture, bits 0..1 promoted piece.
+    // the piece list index is not stored, it is recovered from the board when converting back
+    public static final int COMPACT_PROMOTION = 0b1000;
+    public static final int COMPACT_CAPTURE   = 0b0100;
+    public static final int COMPACT_NONE = 0;
+
+    /**
+     * @param from64 0..5   square on the 8x8 board
+     * @param to64   6..11  square on the 8x8 board
+     * @param flag   12..15 flag of the full encoding (0..4), or COMPACT_PROMOTION [| COMPACT_CAPTURE] | promoted
+     * @return 16 bit move
+     */
+    public static int encodeCompact(int from64, int to64, int flag) {
+        return from64 | (to64 << 6) | (flag << 12);
+    }
+
+    public static int getCompactFrom(int move16) {
+        return move16 & 0x3f;
+    }
+
+    public static int getCompactTarget(int move16) {
+        return (move16 >> 6) & 0x3f;
+    }
+
+    public static int getCompactFlag(int move16) {
+        return (move16 >> 12) & 0xf;
+    }
+
+    /**
+     * @param move full move encoding from the move generator
+     * @return 16 bit move, the piece list index is dropped
+     */
+    public static int toCompact(int move) {
+        int from = Board120.getMailbox120Number(getFromSquare(move));
+        int to = Board120.getMailbox120Number(getTargetSquare(move));
+        int flag = getFlag(move);
+        if (flag == FLAG_PROMOTION) flag = COMPACT_PROMOTION | getPromotion(move);
+        else if (flag == FLAG_PROMOTION_CAPTURE) flag = COMPACT_PROMOTION | COMPACT_CAPTURE | getPromotion(move);
+        return encodeCompact(from, to, flag);
+    }
+
+    /**
+     * @param move16 16 bit move
+     * @param board  position the move is played on, the moving piece's piece list index is looked up here
+     * @return full move encoding accepted by {@code Board120.make}
+     */
+    public static int fromCompact(int move16, Board120 board) {
+        int from = Board120.getMailbox64Number(getCompactFrom(move16));
+        int to = Board120.getMailbox64Number(getCompactTarget(move16));
+        int flag = getCompactFlag(move16);
+        int promoted = 0;
+        if ((flag & COMPACT_PROMOTION) != 0) {
+            promoted = flag & 0x3;
+            flag = ((flag & COMPACT_CAPTURE) != 0) ? FLAG_PROMOTION_CAPTURE : FLAG_PROMOTION;
+        }
+        return encodeMove(from, to, promoted, flag, board.findPieceListIndex(from));
+    }
+
+    // move lists pack a 16 bit move with a signed 16 bit ordering score in the upper bits,
+    // sorting the ints sorts moves by score (ties broken by the move bits). Scores out of
+    // the short range are clamped, so they still sort above or below every other move
+    public static int scoredMove(int move16, int score) {
+        score = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score));
+        return (score << 16) | (move16 & 0xffff);
+    }
+
+    public static int getScore(int scoredMove) {
+        return scoredMove >> 16;
+    }
+
+    public static int getScoredMove(int scoredMove) {
+        return scoredMove & 0xffff;
+    }
+
+    /**
+     * sorts the first size entries of a scored move list, highest score first.
+     */
+    public static void sortByScore(int[] scoredMoves, int size) {
+        Arrays.sort(scoredMoves, 0, size);
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            int tmp = scoredMoves[i];
+            scoredMoves[i] = scoredMoves[j];
+            scoredMoves[j] = tmp;
+        }
+    }
+
     public static int mapBlackToUnsignedInt(int piece) {
         return switch (piece) {
             case -1 -> 9;
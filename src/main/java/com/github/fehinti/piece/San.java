@@ -0,0 +1,195 @@
+package com.github.fehinti.piece;
+
+import com.github.fehinti.board.Board120;
+
+import java.util.List;
+
+import static com.github.fehinti.board.Board120Utils.*;
+
+/*
+ * Standard Algebraic Notation (Nf3, exd5, e8=Q+, O-O-O), resolved against the legal moves of a
+ * Board120. Parsing reads the characters once from the end: suffixes (+ # ! ?) and the promotion,
+ * then the target square, then the optional capture mark and from file / rank, then the piece
+ * letter. No regex, no intermediate strings. Castling is also accepted with zeros (0-0).
+ * Writing appends to a caller's StringBuilder: the moves are only generated to disambiguate a
+ * knight, bishop, rook or queen move, and to tell mate from check after a checking move.
+ */
+public class San {
+
+    private static final String PIECE_LETTERS = " PNBRQK"; // indexed by WPAWN..WKING
+
+    /**
+     * @return the legal move of board written san
+     * @throws IllegalArgumentException if san is not a legal move of board, or is ambiguous
+     */
+    public static int parse(Board120 board, CharSequence san) {
+        int end = san.length();
+        while (end > 0 && isSuffix(san.charAt(end - 1))) end--;
+        if (end < 2) throw new IllegalArgumentException("Invalid SAN " + san);
+
+        int castle = castling(san, end);
+        int piece = WPAWN, promotion = -1, fromFile = -1, fromRank = -1, to;
+        if (castle == 0) {
+            int i = end - 1;
+            char c = san.charAt(i);
+            int promoted = PIECE_LETTERS.indexOf(Character.toUpperCase(c));
+            if (promoted >= WKNIGHT && promoted <= WQUEEN && !isRank(c)) {
+                promotion = promoted - WKNIGHT + KNIGHT_PROMO;
+                i--;
+                if (i >= 0 && san.charAt(i) == '=') i--;
+            }
+            if (i < 1 || !isFile(san.charAt(i - 1)) || !isRank(san.charAt(i)))
+                throw new IllegalArgumentException("Invalid SAN " + san);
+            to = square64(san.charAt(i - 1), san.charAt(i));
+            i -= 2;
+            if (i >= 0 && (san.charAt(i) == 'x' || san.charAt(i) == ':')) i--;
+            if (i >= 0 && isRank(san.charAt(i))) fromRank = san.charAt(i--) - '1';
+            if (i >= 0 && isFile(san.charAt(i))) fromFile = san.charAt(i--) - 'a';
+            if (i == 0) {
+                piece = PIECE_LETTERS.indexOf(san.charAt(0));
+                if (piece <= WPAWN) throw new IllegalArgumentException("Invalid piece in SAN " + san);
+            } else if (i > 0) throw new IllegalArgumentException("Invalid SAN " + san);
+        } else {
+            piece = WKING;
+            int rank = board.getSideToMove() ? 0 : 7;
+            to = rank * 8 + ((castle > 0) ? 6 : 2);
+        }
+
+        int found = 0;
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            int from = Board120.getMailbox120Number(Move.getFromSquare(move));
+            if (Board120.getMailbox120Number(Move.getTargetSquare(move)) != to) continue;
+            if (pieceType(board.getPieceOnSquare(Move.getFromSquare(move))) != piece) continue;
+            if (fromFile >= 0 && from % 8 != fromFile) continue;
+            if (fromRank >= 0 && from / 8 != fromRank) continue;
+            int flag = Move.getFlag(move);
+            boolean promoting = flag == Move.FLAG_PROMOTION || flag == Move.FLAG_PROMOTION_CAPTURE;
+            if (promoting != (promotion >= 0) || (promoting && Move.getPromotion(move) != promotion)) continue;
+            if ((castle != 0) != (flag == Move.FLAG_CASTLE)) continue;
+            if (!isLegal(board, move)) continue;
+            if (found != 0) throw new IllegalArgumentException("Ambiguous SAN " + san);
+            found = move;
+        }
+        if (found == 0) throw new IllegalArgumentException("Illegal SAN " + san);
+        return found;
+    }
+
+    /**
+     * @param move a legal move of board
+     * @return move in SAN with its + or # suffix
+     */
+    public static String toSan(Board120 board, int move) {
+        StringBuilder sb = new StringBuilder(8);
+        append(sb, board, move);
+        return sb.toString();
+    }
+
+    /**
+     * appends move in SAN to sb, board is left unchanged
+     */
+    public static StringBuilder append(StringBuilder sb, Board120 board, int move) {
+        int from = Board120.getMailbox120Number(Move.getFromSquare(move));
+        int to = Board120.getMailbox120Number(Move.getTargetSquare(move));
+        int flag = Move.getFlag(move);
+        int piece = pieceType(board.getPieceOnSquare(Move.getFromSquare(move)));
+        boolean capture = flag == Move.FLAG_CAPTURE || flag == Move.FLAG_EN_PASSANT || flag == Move.FLAG_PROMOTION_CAPTURE;
+
+        if (flag == Move.FLAG_CASTLE) sb.append((to > from) ? "O-O" : "O-O-O");
+        else if (piece == WPAWN) {
+            if (capture) sb.append((char) ('a' + from % 8)).append('x');
+            appendSquare(sb, to);
+            if (flag == Move.FLAG_PROMOTION || flag == Move.FLAG_PROMOTION_CAPTURE)
+                sb.append('=').append(PIECE_LETTERS.charAt(Move.getPromotion(move) - KNIGHT_PROMO + WKNIGHT));
+        } else {
+            sb.append(PIECE_LETTERS.charAt(piece));
+            if (piece != WKING) disambiguate(sb, board, move, piece, from, to);
+            if (capture) sb.append('x');
+            appendSquare(sb, to);
+        }
+
+        board.make(move);
+        boolean white = board.getSideToMove();
+        if (VectorAttack120.isSquareChecked(board, white, white ? board.getWhiteKingSq() : board.getBlackKingSq()))
+            sb.append(hasLegalMove(board) ? '+' : '#');
+        board.unmake(move);
+        return sb;
+    }
+
+    // from file if it tells the move apart from the other legal moves of the same kind to the same square,
+    // else from rank if it does, else both
+    private static void disambiguate(StringBuilder sb, Board120 board, int move, int piece, int from, int to) {
+        boolean other = false, sameFile = false, sameRank = false;
+        for (int m : MoveGenerator.generatePseudoLegal(board)) {
+            if (m == move || Move.getTargetSquare(m) != Move.getTargetSquare(move)) continue;
+            if (pieceType(board.getPieceOnSquare(Move.getFromSquare(m))) != piece || !isLegal(board, m)) continue;
+            int f = Board120.getMailbox120Number(Move.getFromSquare(m));
+            other = true;
+            sameFile |= f % 8 == from % 8;
+            sameRank |= f / 8 == from / 8;
+        }
+        if (!other) return;
+        if (!sameFile) sb.append((char) ('a' + from % 8));
+        else if (!sameRank) sb.append((char) ('1' + from / 8));
+        else sb.append((char) ('a' + from % 8)).append((char) ('1' + from / 8));
+    }
+
+    private static boolean hasLegalMove(Board120 board) {
+        for (int m : MoveGenerator.generatePseudoLegal(board)) {
+            if (isLegal(board, m)) return true;
+        }
+        return false;
+    }
+
+    private static void appendSquare(StringBuilder sb, int sq64) {
+        sb.append((char) ('a' + sq64 % 8)).append((char) ('1' + sq64 / 8));
+    }
+
+    /**
+     * @return moves of a SAN move list played in turn on board, the board is left after the last one
+     */
+    public static int[] play(Board120 board, List<? extends CharSequence> sans) {
+        int[] moves = new int[sans.size()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = parse(board, sans.get(i));
+            board.make(moves[i]);
+        }
+        return moves;
+    }
+
+    // 1 king side, -1 queen side, 0 not a castle
+    private static int castling(CharSequence san, int end) {
+        if (end != 3 && end != 5) return 0;
+        for (int i = 0; i < end; i++) {
+            char c = san.charAt(i);
+            if ((i % 2 == 0) ? (c != 'O' && c != '0') : c != '-') return 0;
+        }
+        return (end == 3) ? 1 : -1;
+    }
+
+    static int pieceType(int piece) {
+        return (piece > 0) ? piece : piece - BPAWN + WPAWN;
+    }
+
+    static boolean isLegal(Board120 board, int move) {
+        board.make(move);
+        boolean legal = !VectorAttack120.isKingInCheck(board);
+        board.unmake(move);
+        return legal;
+    }
+
+    private static boolean isSuffix(char c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+
+    private static boolean isFile(char c) {
+        return c >= 'a' && c <= 'h';
+    }
+
+    private static boolean isRank(char c) {
+        return c >= '1' && c <= '8';
+    }
+
+    private static int square64(char file, char rank) {
+        return (rank - '1') * 8 + (file - 'a');
+    }
+}
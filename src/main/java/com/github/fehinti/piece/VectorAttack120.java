@@ -140,6 +140,27 @@ public class VectorAttack120 {
         return false;
     }
 
+    /**
+     * like isSquareChecked but finds every attacker, used to tell single, discovered and double checks apart
+     * @param squares receives the 120 squares of the attackers, at least 16 long
+     * @return number of pieces of the side opposite to color attacking sq
+     */
+    public static int attackers(Board120 board, boolean color, int sq, int[] squares) {
+        int[] opps = (color) ? board.getBlackPieceList() : board.getWhitePieceList();
+        int n = 0;
+        for (int i : opps) {
+            if (i == OFF_BOARD) continue;
+            int from = i & 0xff;
+            int pie = (i >> 8) & 0xff;
+            if (!isSquareReachableByPiece(from, sq, pie)) continue;
+            // no possible blockers when attacked by a pawn or knight
+            if (pie == WPAWN || pie == WKNIGHT || pie == -BPAWN || pie == -BKNIGHT || findBlocker(board, from, sq)) {
+                squares[n++] = from;
+            }
+        }
+        return n;
+    }
+
     /**
      * @param board current position to be evaluated
      * @param attackedIndex check if this board index is attacked
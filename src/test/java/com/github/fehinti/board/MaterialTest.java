@@ -0,0 +1,109 @@
+package com.github.fehinti.board;
+
+import com.github.fehinti.piece.Move;
+import com.github.fehinti.piece.MoveGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static com.github.fehinti.board.Board120Utils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaterialTest {
+
+    // material key counted from the squares of the board
+    static long count(Board120 board) {
+        long key = 0L;
+        for (int sq = 0; sq < BOARD_SIZE; sq++) {
+            byte piece = board.getPieceOnSquare(Board120.getMailbox64Number(sq));
+            if (piece != EMPTY) key += Material.unit(piece);
+        }
+        return key;
+    }
+
+    @Test
+    void signatureMatchesBoard() {
+        Board120 board = FENParser.parseFENotation120("r3k3/8/8/8/8/8/4P3/R3K3 w - - 0 1");
+        assertEquals(Material.key("KRPKR"), board.getMaterialKey());
+        assertEquals(count(board), board.getMaterialKey());
+        assertEquals(1, Material.count(board.getMaterialKey(), WPAWN));
+        assertEquals(1, Material.count(board.getMaterialKey(), BROOK));
+        assertEquals(0, Material.count(board.getMaterialKey(), BPAWN));
+    }
+
+    @Test
+    void invalidSignatures() {
+        assertThrows(IllegalArgumentException.class, () -> Material.key(""));
+        assertThrows(IllegalArgumentException.class, () -> Material.key("RK"));
+        assertThrows(IllegalArgumentException.class, () -> Material.key("KXK"));
+    }
+
+    @Test
+    void phase() {
+        assertEquals(Material.MAX_PHASE, Material.phase(FENParser.startPos120().getMaterialKey()));
+        assertEquals(0, Material.phase(FENParser.parseFENotation120("4k3/8/8/8/8/8/8/4K3 w - - 0 1").getMaterialKey()));
+        assertEquals(0, Material.phase(Material.key("KPPPKPP")));
+        assertEquals(4, Material.phase(Material.key("KRPKR")));
+        assertEquals(6, Material.phase(Material.key("KQBKN")));
+    }
+
+    // positions with captures (kiwipete), promotions with and without capture and en passant
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r3k3/1P6/8/8/8/8/8/4K3 w - - 0 1",
+            "4k3/8/8/8/8/8/6p1/4K2R b - - 0 1",
+            "4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1",
+            "4k3/8/8/8/3pP3/8/8/4K3 b - e3 0 1" })
+    void keySurvivesMakeUnmake(String fen) {
+        Board120 board = FENParser.parseFENotation120(fen);
+        long before = board.getMaterialKey();
+        int special = 0;
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            int flag = Move.getFlag(move);
+            if (flag == Move.FLAG_CAPTURE || flag == Move.FLAG_EN_PASSANT
+                    || flag == Move.FLAG_PROMOTION || flag == Move.FLAG_PROMOTION_CAPTURE) special++;
+            board.make(move);
+            assertEquals(count(board), board.getMaterialKey(), Move.printMove(move));
+            board.unmake(move);
+            assertEquals(before, board.getMaterialKey(), Move.printMove(move));
+        }
+        assertTrue(special > 0);
+    }
+
+    @Test
+    void enPassantRemovesThePawn() {
+        Board120 board = FENParser.parseFENotation120("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1");
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            if (Move.getFlag(move) != Move.FLAG_EN_PASSANT) continue;
+            board.make(move);
+            assertEquals(Material.key("KPK"), board.getMaterialKey());
+            board.unmake(move);
+            assertEquals(Material.key("KPKP"), board.getMaterialKey());
+            return;
+        }
+        fail("no en passant move");
+    }
+
+    @Test
+    void insufficientMaterial() {
+        assertTrue(FENParser.parseFENotation120("4k3/8/8/8/8/8/8/4K3 w - - 0 1").hasInsufficientMaterial());
+        assertTrue(FENParser.parseFENotation120("4k3/8/8/8/8/8/8/4KN2 w - - 0 1").hasInsufficientMaterial());
+        assertTrue(FENParser.parseFENotation120("4kn2/8/8/8/8/8/8/4K3 w - - 0 1").hasInsufficientMaterial());
+        assertTrue(FENParser.parseFENotation120("4k3/8/8/8/8/8/8/2B1K3 w - - 0 1").hasInsufficientMaterial());
+        assertTrue(FENParser.parseFENotation120("2b1k3/8/8/8/8/8/8/4K3 w - - 0 1").hasInsufficientMaterial());
+        assertFalse(FENParser.parseFENotation120("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1").hasInsufficientMaterial());
+        assertFalse(FENParser.parseFENotation120("4k3/8/8/8/8/8/8/R3K3 w - - 0 1").hasInsufficientMaterial());
+        assertFalse(FENParser.parseFENotation120("4k3/8/8/8/8/8/8/1NN1K3 w - - 0 1").hasInsufficientMaterial());
+    }
+
+    @Test
+    void bishopsOnSameColorAreInsufficient() {
+        // c1 and f8 are both dark squares
+        assertTrue(FENParser.parseFENotation120("4kb2/8/8/8/8/8/8/2B1K3 w - - 0 1").hasInsufficientMaterial());
+        // c1 dark, c8 light
+        assertFalse(FENParser.parseFENotation120("2b1k3/8/8/8/8/8/8/2B1K3 w - - 0 1").hasInsufficientMaterial());
+        // two bishops against one is never a dead draw here
+        assertFalse(FENParser.parseFENotation120("4kb2/8/8/8/8/8/8/2B1KB2 w - - 0 1").hasInsufficientMaterial());
+    }
+}
@@ -1,30 +1,21 @@
 package com.github.fehinti.board;
 
-import org.junit.jupiter.api.AfterEach;
-import org.junit.jupiter.api.BeforeEach;
+import com.github.fehinti.piece.Move;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class MoveTest {
 
-    private final int mv = Move.encodeMove(0, 1, 2, 3, 4, 5);
-
-    @BeforeEach
-    void setUp() {
-    }
-
-    @AfterEach
-    void tearDown() {
-    }
+    private final int mv = Move.encodeMove(21, 98, 3, 4, 5);
 
     @Test
     void encodeMove() {
-        int e = Move.encodeMove(0, 1, 2, 3, 4, 5);
-        assertEquals((1 << 6 | 2 << 12 | 3 << 16 | 4 << 20 | 5 << 23), e);
+        int e = Move.encodeMove(21, 98, 3, 4, 5);
+        assertEquals((21 | 98 << 7 | 3 << 14 | 4 << 16 | 5 << 19), e);
     }
 
-    //int from, int to, int captured, int promoted, int flag, int index) {
+    //int from, int to, int promoted, int flag, int index) {
     @Test
     void getIndex() {
         assertEquals(5, Move.getIndex(mv));
@@ -32,30 +23,21 @@ class MoveTest {
 
     @Test
     void getFromSquare() {
-        assertEquals(0, Move.getFromSquare(mv));
+        assertEquals(21, Move.getFromSquare(mv));
     }
 
     @Test
     void getTargetSquare() {
-        assertEquals(1, Move.getTargetSquare(mv));
-    }
-
-    @Test
-    void getCapturedPiece() {
-        assertEquals(2, Move.getCapturedPiece(mv));
+        assertEquals(98, Move.getTargetSquare(mv));
     }
 
     @Test
-    void getPromotionPiece() {
-        assertEquals(3, Move.getPromotionPiece(mv));
+    void getPromotion() {
+        assertEquals(3, Move.getPromotion(mv));
     }
 
     @Test
     void getFlag() {
         assertEquals(4, Move.getFlag(mv));
     }
-
-    @Test
-    void convertsFileRankToIndex() {
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,118 @@
+package com.github.fehinti.board;
+
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionCodecTest {
+
+    static final String[] FENS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+            "rnbqkbnr/pppp1ppp/8/8/3Pp3/8/PPP1PPPP/RNBQKBNR b Kq d3 0 3",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 99 1234",
+            "4k3/8/8/8/8/8/8/4K3 b - - 255 65535",
+    };
+
+    private final PositionCodec codec = new PositionCodec();
+
+    private static long perft(Board120 board, int depth) {
+        if (depth == 0) return 1;
+        long nodes = 0;
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            board.make(move);
+            if (!VectorAttack120.isKingInCheck(board)) nodes += perft(board, depth - 1);
+            board.unmake(move);
+        }
+        return nodes;
+    }
+
+    @Test
+    void roundTripsThroughBytes() {
+        byte[] bytes = new byte[PositionCodec.SIZE + 3];
+        Board120 decoded = FENParser.startPos120();
+        for (String fen : FENS) {
+            Board120 board = FENParser.parseFENotation120(fen);
+            codec.encode(board, bytes, 3);
+            codec.decode(bytes, 3, decoded);
+            assertEquals(fen, FENParser.getFENotation(decoded));
+            assertEquals(board.getZobristKey(), decoded.getZobristKey());
+            assertEquals(board.getPawnKey(), decoded.getPawnKey());
+            assertEquals(board.getMaterialKey(), decoded.getMaterialKey());
+        }
+    }
+
+    @Test
+    void writesTheDocumentedLayout() {
+        byte[] bytes = new byte[PositionCodec.SIZE];
+        codec.encode(FENParser.parseFENotation120(FENS[0]), bytes, 0);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        assertEquals(0xffff_0000_0000_ffffL, buffer.getLong(0));
+        // a1 white rook, b1 white knight .. then the white pawns
+        assertEquals(0x4235_6324_1111_1111L, buffer.getLong(8));
+        // the black pawns, then a8 black rook .. h8
+        assertEquals(0x9999_9999_cabd_ebacL, buffer.getLong(16));
+        // white to move, all castling rights, no en passant, half move 0, full move 1
+        assertEquals(1 | 0xf << 1 | 1 << 17, buffer.getLong(24));
+    }
+
+    @Test
+    void decodedBoardsPlay() {
+        Board120 decoded = FENParser.startPos120();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(PositionCodec.SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        codec.encode(FENParser.parseFENotation120(FENS[1]), buffer);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        codec.decode(buffer, decoded);
+        assertEquals(97862, perft(decoded, 3));
+        codec.decode(ByteBuffer.wrap(toBytes(FENS[2])), decoded);
+        assertEquals(perft(FENParser.parseFENotation120(FENS[2]), 3), perft(decoded, 3));
+    }
+
+    private byte[] toBytes(String fen) {
+        byte[] bytes = new byte[PositionCodec.SIZE];
+        codec.encode(FENParser.parseFENotation120(fen), bytes, 0);
+        return bytes;
+    }
+
+    @Test
+    void streamsPositionsInBulk() {
+        Board120 root = FENParser.parseFENotation120(FENS[1]);
+        List<Board120> children = new ArrayList<>();
+        List<String> fens = new ArrayList<>();
+        for (int move : MoveGenerator.generatePseudoLegal(root)) {
+            root.make(move);
+            if (!VectorAttack120.isKingInCheck(root)) {
+                children.add(new Board120(root));
+                fens.add(FENParser.getFENotation(root));
+            }
+            root.unmake(move);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(children.size() * PositionCodec.SIZE);
+        codec.encodeAll(children, buffer);
+        buffer.flip();
+        List<String> decoded = new ArrayList<>();
+        int n = codec.decodeAll(buffer, FENParser.startPos120(), board -> decoded.add(FENParser.getFENotation(board)));
+        assertEquals(48, n);
+        assertEquals(fens, decoded);
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        byte[] bytes = toBytes(FENS[0]);
+        bytes[8] = 0x72; // piece code 7
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(bytes, 0, FENParser.startPos120()));
+        Board120 counters = FENParser.parseFENotation120("4k3/8/8/8/8/8/8/4K3 b - - 256 1");
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(counters, new byte[PositionCodec.SIZE], 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.decodeAll(ByteBuffer.allocate(PositionCodec.SIZE + 1), FENParser.startPos120(), b -> { }));
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.fehinti.board;
+
+import com.github.fehinti.piece.Move;
+import com.github.fehinti.piece.MoveGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepetitionTest {
+
+    private Board120 board;
+
+    @BeforeEach
+    void setUp() {
+        board = FENParser.startPos120();
+    }
+
+    // plays moves given in coordinate notation (e2e4)
+    private int play(String... moves) {
+        int found = 0;
+        for (String mv : moves) {
+            found = 0;
+            for (int move : MoveGenerator.generatePseudoLegal(board)) {
+                if (Move.printMove(move).equals(mv)) found = move;
+            }
+            assertNotEquals(0, found);
+            board.make(found);
+        }
+        return found;
+    }
+
+    @Test
+    void detectsTwoFoldRepetition() {
+        play("g1f3", "g8f6");
+        assertFalse(board.isRepetition());
+        play("f3g1", "f6g8");
+        assertTrue(board.isRepetition());
+        assertFalse(board.isThreefoldRepetition());
+    }
+
+    @Test
+    void detectsThreefoldRepetition() {
+        play("g1f3", "g8f6", "f3g1", "f6g8", "g1f3", "g8f6", "f3g1");
+        assertFalse(board.isThreefoldRepetition());
+        play("f6g8");
+        assertTrue(board.isThreefoldRepetition());
+    }
+
+    @Test
+    void pawnMoveEndsRepetitionWindow() {
+        play("g1f3", "g8f6", "f3g1", "f6g8", "e2e3");
+        assertEquals(0, board.getHalfMoveClock());
+        play("e7e6", "g1f3", "g8f6", "f3g1");
+        assertFalse(board.isRepetition());
+        play("f6g8");
+        assertTrue(board.isRepetition()); // repeats the position after e7e6
+    }
+
+    @Test
+    void unmakeRestoresRepetitionState() {
+        play("g1f3", "g8f6", "f3g1");
+        int last = play("f6g8");
+        assertTrue(board.isRepetition());
+        board.unmake(last);
+        assertFalse(board.isRepetition());
+    }
+}
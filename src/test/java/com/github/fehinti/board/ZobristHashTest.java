@@ -0,0 +1,35 @@
+package com.github.fehinti.board;
+
+import com.github.fehinti.piece.Move;
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZobristHashTest {
+
+    // kiwipete and position 4: castling, en passant, promotions and captures within 3 plies
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1" })
+    void incrementalKeyMatchesHashAtInit(String fen) {
+        Board120 board = FENParser.parseFENotation120(fen);
+        assertEquals(ZobristHash.hashAtInit(board), board.getZobristKey());
+        walk(board, 3);
+        assertEquals(fen, FENParser.getFENotation(board));
+    }
+
+    static void walk(Board120 board, int depth) {
+        if (depth == 0) return;
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            board.make(move);
+            assertEquals(ZobristHash.hashAtInit(board), board.getZobristKey(), "make " + Move.printMove(move));
+            if (!VectorAttack120.isKingInCheck(board)) walk(board, depth - 1);
+            board.unmake(move);
+            assertEquals(ZobristHash.hashAtInit(board), board.getZobristKey(), "unmake " + Move.printMove(move));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.fehinti.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchAnalysisTest {
+
+    @Test
+    void writesResultsInInputOrder() throws Exception {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            input.append("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - id \"mate").append(i).append("\";\n");
+            input.append("# skipped\n\n");
+            input.append("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1\n");
+            input.append("bad line\n");
+        }
+        StringWriter output = new StringWriter();
+        BatchAnalysis analysis = new BatchAnalysis(Search.Limits.depth(2), 3);
+        try (BufferedReader in = new BufferedReader(new StringReader(input.toString()));
+             BufferedWriter out = new BufferedWriter(output)) {
+            assertEquals(60, analysis.run(in, out));
+        }
+        String[] lines = output.toString().split("\\R");
+        assertEquals(60, lines.length);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(lines[3 * i].contains("bm a1a8;") && lines[3 * i].endsWith("id \"mate" + i + "\";"));
+            assertTrue(lines[3 * i + 1].startsWith("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - bm "));
+            assertTrue(lines[3 * i + 2].startsWith("bad line error"));
+        }
+    }
+
+    static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    static String repeat(String line, int times) {
+        return (line + "\n").repeat(times);
+    }
+
+    @Test
+    void searchErrorIsWrittenForItsLine() throws Exception {
+        StringWriter output = new StringWriter();
+        Evaluator failing = board -> {
+            throw new IllegalStateException("broken");
+        };
+        BatchAnalysis analysis = new BatchAnalysis(Search.Limits.depth(1), 2, () -> failing);
+        try (BufferedReader in = new BufferedReader(new StringReader(repeat(START, 40)));
+             BufferedWriter out = new BufferedWriter(output)) {
+            assertEquals(40, analysis.run(in, out));
+        }
+        for (String line : output.toString().split("\\R")) assertEquals(START + " error \"broken\";", line);
+    }
+
+    @Test
+    void deadWorkerFailsTheRun() {
+        Evaluator dying = board -> {
+            throw new AssertionError("dead");
+        };
+        BatchAnalysis analysis = new BatchAnalysis(Search.Limits.depth(1), 2, () -> dying);
+        // more lines than the window, so a hang would block the reader
+        BufferedReader in = new BufferedReader(new StringReader(repeat(START, 200)));
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> analysis.run(in, new BufferedWriter(new StringWriter())));
+        assertInstanceOf(AssertionError.class, e.getCause());
+    }
+}
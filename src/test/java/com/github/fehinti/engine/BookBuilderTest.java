@@ -0,0 +1,127 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.piece.San;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookBuilderTest {
+
+    static final String PGN = """
+            [Result "1-0"]
+            1. e4 e5 2. Nf3 Nc6 1-0
+
+            [Result "1/2-1/2"]
+            1. e4 c5 2. Nf3 d6 1/2-1/2
+
+            [Result "0-1"]
+            1. d4 d5 2. c4 e6 0-1
+
+            [Result "1-0"]
+            1. e4 e5 2. Bc4 Nf6 1-0
+
+            [Result "*"]
+            1. a4 a5 *
+
+            [Result "1-0"]
+            1. e4 e5 2. Ke3 1-0
+
+            [Result "0-1"]
+            [SetUp "1"]
+            [FEN "not a position"]
+            1. e4 0-1
+            """;
+
+    private Path tmpDir;
+    private long[] random64;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Random random = new Random(11);
+        random64 = new long[PolyglotBook.RANDOM64_SIZE];
+        for (int i = 0; i < random64.length; i++) random64[i] = random.nextLong();
+        tmpDir = Files.createTempDirectory("book");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(tmpDir)) {
+            for (Path path : files.toList()) Files.delete(path);
+        }
+        Files.delete(tmpDir);
+    }
+
+    private Path build(int maxPly, int minGames, int runEntries) throws IOException {
+        BookBuilder builder = new BookBuilder(random64, maxPly, minGames, runEntries, tmpDir);
+        try (PgnReader pgn = new PgnReader(new StringReader(PGN))) {
+            builder.addAll(pgn);
+        }
+        assertEquals(5, builder.getGames());
+        assertEquals(3, builder.getSkipped()); // the * game, the illegal Ke3 and the invalid FEN
+        Path book = Files.createTempFile(tmpDir, "book", ".bin");
+        builder.build(book);
+        return book;
+    }
+
+    private List<PolyglotBook.Entry> entries(Path book, String fen) throws IOException {
+        try (PolyglotBook reader = new PolyglotBook(book, random64)) {
+            return reader.entries(reader.key(FENParser.parseFENotation120(fen)));
+        }
+    }
+
+    @Test
+    void weightsMovesByResult() throws IOException {
+        // a run of 3 records forces several runs to be merged
+        Path book = build(4, 1, 3);
+        List<PolyglotBook.Entry> start = entries(book, PolyglotBookTest.START);
+        // e4: 3 wins and a draw, 7; d4 only lost, weight 0 and left out
+        assertEquals(1, start.size());
+        assertEquals(PolyglotBookTest.polyglot("e2e4"), start.get(0).move());
+        assertEquals(7, start.get(0).weight());
+        // after 1. e4 e5 Nf3 and Bc4 won once each, 2 from the side of white
+        List<PolyglotBook.Entry> e5 = entries(book, "rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2");
+        assertEquals(2, e5.size());
+        assertEquals(2, e5.get(0).weight());
+        assertEquals(2, e5.get(1).weight());
+        // the ply limit
+        assertTrue(entries(book, "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3").isEmpty());
+    }
+
+    @Test
+    void keepsBookOrder() throws IOException {
+        Path book = build(4, 1, 2);
+        byte[] bytes = Files.readAllBytes(book);
+        assertEquals(0, bytes.length % PolyglotBook.ENTRY_SIZE);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int at = PolyglotBook.ENTRY_SIZE; at < bytes.length; at += PolyglotBook.ENTRY_SIZE) {
+            assertTrue(Long.compareUnsigned(buffer.getLong(at - PolyglotBook.ENTRY_SIZE), buffer.getLong(at)) <= 0);
+        }
+        // same book whatever the run size
+        assertArrayEquals(bytes, Files.readAllBytes(build(4, 1, 1000)));
+    }
+
+    @Test
+    void leavesOutRareMoves() throws IOException {
+        Path book = build(4, 2, 1000);
+        assertEquals(1, entries(book, PolyglotBookTest.START).size()); // e4 in 4 games
+        // after 1. e4 e5 Nf3 and Bc4 were played in one game each
+        assertTrue(entries(book, "rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2").isEmpty());
+        // after 1. e4 black lost with e5 three times and drew with c5 once
+        Board120 board = FENParser.startPos120();
+        San.play(board, List.of("e4"));
+        assertTrue(entries(book, FENParser.getFENotation(board)).isEmpty());
+    }
+}
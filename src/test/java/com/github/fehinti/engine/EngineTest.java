@@ -0,0 +1,61 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EngineTest {
+
+    static final String ITALIAN = "r1bqk1nr/pppp1ppp/2n5/2b1p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4";
+
+    // plays our move and returns the position after it
+    private static String playBestMove(Engine engine) {
+        Search.Result result = engine.go(10_000, 10_000, 0, 0, 0);
+        assertNotEquals(0, result.move());
+        engine.play(result.move());
+        return engine.getPosition();
+    }
+
+    @Test
+    void ponderHitContinuesOnTheClock() throws InterruptedException {
+        Engine engine = new Engine(ITALIAN, 0);
+        Board120 expected = FENParser.parseFENotation120(playBestMove(engine));
+        int reply = engine.getPonderMove();
+        assertNotEquals(0, reply);
+        engine.ponder(reply);
+        Thread.sleep(100);
+        Search.Result result = engine.ponderHit(1_000, 1_000, 0, 0, 0);
+        assertNotEquals(0, result.move());
+        // the predicted reply stays on the board
+        expected.make(reply);
+        assertEquals(FENParser.getFENotation(expected), engine.getPosition());
+        engine.play(result.move());
+    }
+
+    @Test
+    void ponderMissAbortsAndTakesBackTheReply() throws InterruptedException {
+        Engine engine = new Engine(ITALIAN, 0);
+        String afterOurMove = playBestMove(engine);
+        engine.ponder(engine.getPonderMove());
+        Thread.sleep(100);
+        long st = System.nanoTime();
+        engine.ponderMiss();
+        long millis = (System.nanoTime() - st) / 1_000_000;
+        assertTrue(millis < 50, "abort took " + millis + " ms");
+        assertEquals(afterOurMove, engine.getPosition());
+    }
+
+    @Test
+    void immediateMissIsNotLost() throws InterruptedException {
+        Engine engine = new Engine(ITALIAN, 0);
+        String afterOurMove = playBestMove(engine);
+        int reply = engine.getPonderMove();
+        for (int i = 0; i < 20; i++) {
+            engine.ponder(reply);
+            engine.ponderMiss();
+            assertEquals(afterOurMove, engine.getPosition());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvalCacheTest {
+
+    static String FEN_1 = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    static String FEN_2 = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1";
+
+    // counts how often the wrapped evaluator is really called
+    static class CountingEvaluator implements Evaluator {
+        int calls;
+
+        public double evaluate(Board120 board) {
+            calls++;
+            return PESTO.getInstance().evaluate(board);
+        }
+    }
+
+    private CountingEvaluator counting;
+    private EvalCache cache;
+
+    @BeforeEach
+    void setUp() {
+        counting = new CountingEvaluator();
+        cache = new EvalCache(counting, 1024);
+    }
+
+    @Test
+    void returnsCachedScoreForSamePosition() {
+        Board120 board = FENParser.parseFENotation120(FEN_1);
+        double first = cache.evaluate(board);
+        double second = cache.evaluate(FENParser.parseFENotation120(FEN_1));
+        assertEquals(first, second);
+        assertEquals(1, counting.calls);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void scoresMatchWrappedEvaluator() {
+        for (String fen : new String[] { FEN_1, FEN_2 }) {
+            Board120 board = FENParser.parseFENotation120(fen);
+            assertEquals(PESTO.getInstance().evaluate(board), cache.evaluate(board));
+            assertEquals(PESTO.getInstance().evaluate(board), cache.evaluate(board));
+        }
+        assertEquals(2, counting.calls);
+    }
+
+    @Test
+    void clearEmptiesCacheAndCounters() {
+        Board120 board = FENParser.parseFENotation120(FEN_1);
+        cache.evaluate(board);
+        cache.clear();
+        assertEquals(0, cache.getHits() + cache.getMisses());
+        cache.evaluate(board);
+        assertEquals(2, counting.calls);
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.perft.PerftCheckpoint;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// surefire runs this test twice: in the default execution, where no event may be recorded, and in
+// the jfr-events execution with -Dengine.jfr=true
+class JfrEventsTest {
+
+    static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static long count(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).count();
+    }
+
+    @Test
+    void recordsEngineAndPerftEvents() throws IOException {
+        Path jfr = Files.createTempFile("events", ".jfr");
+        Path checkpoint = Files.createTempFile("perft", ".ckpt");
+        Files.delete(checkpoint);
+        List<RecordedEvent> events;
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable(SearchIterationEvent.class);
+                recording.enable(EvalCacheClearEvent.class);
+                recording.enable(BatchPositionEvent.class);
+                recording.enable("com.github.fehinti.PerftRootMove");
+                recording.start();
+
+                EvalCache cache = new EvalCache(PESTO.getInstance(), 1 << 10);
+                new Search(cache).search(FENParser.startPos120(), Search.Limits.depth(3));
+                cache.clear();
+                BatchAnalysis batch = new BatchAnalysis(Search.Limits.depth(2), 1);
+                batch.analyse(FENParser.startPos120(), new Search(PESTO.getInstance()), START);
+                new PerftCheckpoint(checkpoint, START, 2, false).run(1);
+
+                recording.stop();
+                recording.dump(jfr);
+            }
+            events = RecordingFile.readAllEvents(jfr);
+        } finally {
+            Files.deleteIfExists(jfr);
+            Files.deleteIfExists(checkpoint);
+        }
+        if (!JfrEvents.ENABLED) {
+            assertEquals(0, count(events, "com.github.fehinti.SearchIteration"));
+            assertEquals(0, count(events, "com.github.fehinti.EvalCacheClear"));
+            assertEquals(0, count(events, "com.github.fehinti.BatchPosition"));
+            assertEquals(0, count(events, "com.github.fehinti.PerftRootMove"));
+            return;
+        }
+        // 3 iterations of the search, 2 of the batch position
+        assertEquals(5, count(events, "com.github.fehinti.SearchIteration"));
+        assertEquals(1, count(events, "com.github.fehinti.EvalCacheClear"));
+        assertEquals(1, count(events, "com.github.fehinti.BatchPosition"));
+        assertEquals(20, count(events, "com.github.fehinti.PerftRootMove"));
+        RecordedEvent iteration = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.github.fehinti.SearchIteration")
+                        && e.getInt("depth") == 3)
+                .findFirst().orElseThrow();
+        assertTrue(iteration.getLong("nodes") > 0);
+        assertEquals(1, iteration.getInt("lines"));
+        assertNotNull(iteration.getString("bestMove"));
+    }
+}
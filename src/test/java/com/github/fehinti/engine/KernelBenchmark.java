@@ -0,0 +1,96 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * JMH comparison of the scalar and the SIMD evaluation kernels, run from the IDE or with
+ *   java --add-modules jdk.incubator.vector -cp <test classpath> com.github.fehinti.engine.KernelBenchmark
+ * pestoEvaluate goes through Kernels and is run once per fork, with and without -Dengine.scalar=true.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class KernelBenchmark {
+
+    static final int HIDDEN = 256;
+
+    short[] acc;
+    short[] weights;
+    int[] table;
+    int[] lists;
+    Board120 board;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        acc = KernelsTest.randomShorts(random, 2 * HIDDEN, 400);
+        weights = KernelsTest.randomShorts(random, NNUE.INPUTS * HIDDEN, 32);
+        table = KernelsTest.randomListTable(random);
+        board = FENParser.parseFENotation120("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        lists = new int[32];
+        board.copyPieceLists(lists);
+    }
+
+    @Benchmark
+    public short[] addSubColumnScalar() {
+        Kernels.addColumnScalar(acc, 0, weights, 100 * HIDDEN, HIDDEN);
+        Kernels.subColumnScalar(acc, 0, weights, 100 * HIDDEN, HIDDEN);
+        return acc;
+    }
+
+    @Benchmark
+    public short[] addSubColumnVector() {
+        VectorKernels.addColumn(acc, 0, weights, 100 * HIDDEN, HIDDEN);
+        VectorKernels.subColumn(acc, 0, weights, 100 * HIDDEN, HIDDEN);
+        return acc;
+    }
+
+    @Benchmark
+    public int creluDotScalar() {
+        return Kernels.creluDotScalar(acc, 0, weights, 0, HIDDEN) + Kernels.creluDotScalar(acc, HIDDEN, weights, HIDDEN, HIDDEN);
+    }
+
+    @Benchmark
+    public int creluDotVector() {
+        return VectorKernels.creluDot(acc, 0, weights, 0, HIDDEN) + VectorKernels.creluDot(acc, HIDDEN, weights, HIDDEN, HIDDEN);
+    }
+
+    @Benchmark
+    public int pieceListSumScalar() {
+        return Kernels.pieceListSumScalar(table, lists);
+    }
+
+    @Benchmark
+    public int pieceListSumVector() {
+        return VectorKernels.pieceListSum(table, lists);
+    }
+
+    @Benchmark
+    public double pestoEvaluate() {
+        return PESTO.getInstance().evaluate(board);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(KernelBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.fehinti.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.github.fehinti.board.Board120Utils.OFF_BOARD;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class KernelsTest {
+
+    // odd sizes exercise the scalar tail after the last full vector
+    static final int[] SIZES = { 1, 7, 15, 16, 17, 31, 33, 64, 100, 255, 256 };
+
+    @Test
+    void vectorColumnsMatchScalar() {
+        assumeTrue(Kernels.VECTOR);
+        Random random = new Random(7);
+        for (int hidden : SIZES) {
+            short[] weights = randomShorts(random, 3 * hidden, 64);
+            short[] scalar = randomShorts(random, 2 * hidden, 1000);
+            short[] vector = scalar.clone();
+            Kernels.addColumnScalar(scalar, hidden, weights, 2 * hidden, hidden);
+            VectorKernels.addColumn(vector, hidden, weights, 2 * hidden, hidden);
+            assertArrayEquals(scalar, vector);
+            Kernels.subColumnScalar(scalar, 0, weights, hidden, hidden);
+            VectorKernels.subColumn(vector, 0, weights, hidden, hidden);
+            assertArrayEquals(scalar, vector);
+        }
+    }
+
+    @Test
+    void vectorCreluDotMatchesScalar() {
+        assumeTrue(Kernels.VECTOR);
+        Random random = new Random(11);
+        for (int hidden : SIZES) {
+            // accumulator values outside 0..QA check the clipping
+            short[] acc = randomShorts(random, 2 * hidden, 600);
+            short[] weights = randomShorts(random, 2 * hidden, 128);
+            assertEquals(Kernels.creluDotScalar(acc, hidden, weights, hidden, hidden),
+                    VectorKernels.creluDot(acc, hidden, weights, hidden, hidden));
+        }
+    }
+
+    @Test
+    void vectorPieceListSumMatchesScalar() {
+        assumeTrue(Kernels.VECTOR);
+        Random random = new Random(13);
+        int[] table = randomListTable(random);
+        // from full lists to empty ones, and lengths that are not a number of vectors
+        for (int length : new int[] { 32, 16, 13 }) {
+            int[] lists = new int[length];
+            for (int empty = 0; empty <= length; empty++) {
+                for (int i = 0; i < length; i++) lists[i] = random.nextInt(table.length - 1);
+                for (int i = 0; i < empty; i++) lists[random.nextInt(length)] = OFF_BOARD;
+                assertEquals(Kernels.pieceListSumScalar(table, lists), VectorKernels.pieceListSum(table, lists));
+            }
+        }
+    }
+
+    @Test
+    void pieceListSumSkipsEmptySlots() {
+        int[] table = randomListTable(new Random(17));
+        int[] lists = new int[32];
+        Arrays.fill(lists, OFF_BOARD);
+        assertEquals(0, Kernels.pieceListSum(table, lists));
+        lists[3] = 100;
+        lists[20] = 32766;
+        assertEquals(table[101] + table[32767], Kernels.pieceListSum(table, lists));
+    }
+
+    // values of entries 0..LIST_TABLE_SIZE - 2 one slot up, zero for OFF_BOARD at 0
+    static int[] randomListTable(Random random) {
+        int[] table = new int[PESTO.LIST_TABLE_SIZE];
+        for (int i = 1; i < table.length; i++) table[i] = random.nextInt(2000) - 1000;
+        return table;
+    }
+
+    static short[] randomShorts(Random random, int n, int bound) {
+        short[] values = new short[n];
+        for (int i = 0; i < n; i++) values[i] = (short) (random.nextInt(2 * bound + 1) - bound);
+        return values;
+    }
+}
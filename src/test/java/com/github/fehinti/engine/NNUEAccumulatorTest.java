@@ -0,0 +1,82 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.piece.Move;
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NNUEAccumulatorTest {
+
+    // not a multiple of the vector length, so the scalar tails run too
+    static final NNUE NETWORK = NNUE.random(40, 3);
+    static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    // kiwipete and position 4: castling, en passant, promotions and captures within 3 plies
+    @ParameterizedTest
+    @ValueSource(strings = {
+            KIWIPETE,
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1" })
+    void incrementalMatchesRefresh(String fen) {
+        Board120 board = FENParser.parseFENotation120(fen);
+        NNUEAccumulator accumulator = NNUEAccumulator.attach(NETWORK, board);
+        // refreshed from each position, attached to a board of its own
+        NNUEAccumulator fresh = NNUEAccumulator.attach(NETWORK, new Board120(board));
+        short[] start = accumulator.current();
+        walk(board, 3, accumulator, fresh);
+        assertEquals(0, accumulator.ply());
+        assertArrayEquals(start, accumulator.current());
+        board.setPieceObserver(null);
+    }
+
+    static void walk(Board120 board, int depth, NNUEAccumulator accumulator, NNUEAccumulator fresh) {
+        fresh.refresh(board);
+        short[] expected = fresh.current();
+        assertArrayEquals(expected, accumulator.current());
+        assertEquals(NETWORK.output(expected, 0, board.getSideToMove()), accumulator.evaluate(board));
+        if (depth == 0) return;
+        int ply = accumulator.ply();
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            board.make(move);
+            assertEquals(ply + 1, accumulator.ply(), Move.printMove(move));
+            if (!VectorAttack120.isKingInCheck(board)) walk(board, depth - 1, accumulator, fresh);
+            board.unmake(move);
+            assertEquals(ply, accumulator.ply(), Move.printMove(move));
+            assertArrayEquals(expected, accumulator.current());
+        }
+    }
+
+    @Test
+    void evaluatesOnlyItsOwnBoard() {
+        NNUEAccumulator accumulator = NNUEAccumulator.attach(NETWORK, FENParser.startPos120());
+        assertThrows(IllegalArgumentException.class, () -> accumulator.evaluate(FENParser.startPos120()));
+    }
+
+    @Test
+    void saveLoadRoundTrip() throws IOException {
+        Path file = Files.createTempFile("nnue", ".bin");
+        try {
+            NETWORK.save(file);
+            NNUE loaded = NNUE.load(file);
+            assertEquals(NETWORK.hidden, loaded.getHidden());
+            assertArrayEquals(NETWORK.featureWeights, loaded.featureWeights);
+            assertArrayEquals(NETWORK.featureBias, loaded.featureBias);
+            assertArrayEquals(NETWORK.outputWeights, loaded.outputWeights);
+            assertEquals(NETWORK.outputBias, loaded.outputBias);
+            Board120 board = FENParser.parseFENotation120(KIWIPETE);
+            double expected = NNUEAccumulator.attach(NETWORK, board).evaluate(board);
+            assertEquals(expected, NNUEAccumulator.attach(loaded, board).evaluate(board));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.board.ZobristHash;
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PawnStructureTest {
+
+    static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    static PawnStructure.Entry evaluate(String fen) {
+        return PawnStructure.evaluate(FENParser.parseFENotation120(fen), new PawnStructure.Entry());
+    }
+
+    @Test
+    void doubledPawns() {
+        // c2 c3 d2 against c7 d7: nothing isolated or passed
+        PawnStructure.Entry entry = evaluate("4k3/2pp4/8/8/8/2P5/2PP4/4K3 w - - 0 1");
+        assertEquals(PawnStructure.DOUBLED_MG, entry.getMidGame());
+        assertEquals(PawnStructure.DOUBLED_EG, entry.getEndGame());
+        assertEquals(0L, entry.getPassers());
+    }
+
+    @Test
+    void isolatedPawn() {
+        // a2 has no neighbour and is blocked by a7, a7 and b7 are not passed
+        PawnStructure.Entry entry = evaluate("4k3/pp6/8/8/8/8/P7/4K3 w - - 0 1");
+        assertEquals(PawnStructure.ISOLATED_MG, entry.getMidGame());
+        assertEquals(PawnStructure.ISOLATED_EG, entry.getEndGame());
+        assertEquals(0L, entry.getPassers());
+    }
+
+    @Test
+    void passedPawnsByRelativeRank() {
+        PawnStructure.Entry white = evaluate("4k3/8/8/4P3/3P4/8/8/4K3 w - - 0 1");
+        assertEquals(PawnStructure.PASSED_MG[3] + PawnStructure.PASSED_MG[4], white.getMidGame());
+        assertEquals(PawnStructure.PASSED_EG[3] + PawnStructure.PASSED_EG[4], white.getEndGame());
+        assertEquals((1L << 27) | (1L << 36), white.getPassers()); // d4 e5
+        // the same pawns for black score the other way
+        PawnStructure.Entry black = evaluate("4k3/8/8/3p4/4p3/8/8/4K3 b - - 0 1");
+        assertEquals(-white.getMidGame(), black.getMidGame());
+        assertEquals(-white.getEndGame(), black.getEndGame());
+        assertEquals((1L << 35) | (1L << 28), black.getPassers()); // d5 e4
+    }
+
+    @Test
+    void probeCachesTheScore() {
+        PawnHashTable table = new PawnHashTable(64);
+        Board120 board = FENParser.parseFENotation120(KIWIPETE);
+        PawnStructure.Entry expected = PawnStructure.evaluate(board, new PawnStructure.Entry());
+        int score = PawnStructure.probe(board, table);
+        assertEquals(1, table.getMisses());
+        assertEquals(score, PawnStructure.probe(board, table));
+        assertEquals(1, table.getHits());
+        assertEquals(expected.getMidGame(), PawnStructure.midGame(score));
+        assertEquals(expected.getEndGame(), PawnStructure.endGame(score));
+    }
+
+    @Test
+    void tornEntryIsAMiss() {
+        PawnHashTable table = new PawnHashTable(64);
+        Board120 board = FENParser.parseFENotation120(KIWIPETE);
+        PawnStructure.Entry entry = PawnStructure.evaluate(board, new PawnStructure.Entry());
+        table.store(entry);
+        long key = board.getPawnKey();
+        assertTrue(table.probe(key, new PawnStructure.Entry()));
+        int slot = ((int) key & 63) * PawnHashTable.ENTRY_SIZE;
+        // every word of the entry is covered by the check
+        for (int word = 0; word < PawnHashTable.ENTRY_SIZE; word++) {
+            table.table[slot + word] ^= 1L << word;
+            assertFalse(table.probe(key, new PawnStructure.Entry()));
+            assertEquals(PawnHashTable.MISS, table.probeScore(key));
+            table.table[slot + word] ^= 1L << word;
+        }
+        // half of another store: the data of one key under the check of another
+        PawnStructure.Entry other = evaluate("4k3/8/8/4P3/3P4/8/8/4K3 w - - 0 1");
+        other.key = key ^ (64L << 1);
+        table.store(other);
+        table.table[slot + PawnHashTable.CHECK] = entry.key ^ entry.score ^ entry.passers ^ entry.whiteAttacks ^ entry.blackAttacks;
+        assertEquals(PawnHashTable.MISS, table.probeScore(key));
+        assertEquals(PawnHashTable.MISS, table.probeScore(other.key));
+    }
+
+    @Test
+    void pawnKeyMatchesHashAtInitThroughMakeUnmake() {
+        walk(FENParser.parseFENotation120(KIWIPETE), 3);
+        walk(FENParser.parseFENotation120("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"), 3);
+    }
+
+    static void walk(Board120 board, int depth) {
+        if (depth == 0) return;
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            board.make(move);
+            assertEquals(ZobristHash.pawnHashAtInit(board), board.getPawnKey());
+            if (!VectorAttack120.isKingInCheck(board)) walk(board, depth - 1);
+            board.unmake(move);
+            assertEquals(ZobristHash.pawnHashAtInit(board), board.getPawnKey());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.fehinti.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgnReaderTest {
+
+    static final String PGN = """
+            [Event "Test"]
+            [White "A \\"quoted\\" name"]
+            [Result "1-0"]
+
+            1. e4 {best by test} e5 2. Nf3 (2. f4 exf4 (2... d5) 3. Nf3) 2... Nc6 $1 3. Bb5 a6!? ; comment
+            % escaped line
+            4. Ba4 1-0
+
+            [Event "No result token"]
+
+            1.d4 d5 2.c4
+            [Event "Third"]
+            1. e4 e5 e.p. *
+            """;
+
+    @Test
+    void readsGamesOneByOne() throws IOException {
+        try (PgnReader pgn = new PgnReader(new StringReader(PGN))) {
+            PgnReader.Game first = pgn.next();
+            assertEquals("Test", first.tags().get("Event"));
+            assertEquals("A \"quoted\" name", first.tags().get("White"));
+            assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bb5", "a6!?", "Ba4"), first.moves());
+            assertEquals("1-0", first.result());
+
+            PgnReader.Game second = pgn.next();
+            assertEquals(List.of("d4", "d5", "c4"), second.moves());
+            assertEquals("*", second.result());
+
+            PgnReader.Game third = pgn.next();
+            assertEquals("Third", third.tags().get("Event"));
+            assertEquals(List.of("e4", "e5"), third.moves());
+
+            assertNull(pgn.next());
+            assertEquals(3, pgn.getGames());
+        }
+    }
+
+    @Test
+    void stripsMoveNumbers() {
+        assertEquals("e4", PgnReader.stripMoveNumber("12.e4"));
+        assertEquals("", PgnReader.stripMoveNumber("12..."));
+        assertEquals("Nf3", PgnReader.stripMoveNumber("Nf3"));
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.piece.Move;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolyglotBookTest {
+
+    static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private Path random64File;
+    private Path bookFile;
+    private long[] random64;
+
+    // polyglot encoding from coordinates, e.g. "e2e4"
+    static int polyglot(String move) {
+        int from = (move.charAt(1) - '1') * 8 + (move.charAt(0) - 'a');
+        int to = (move.charAt(3) - '1') * 8 + (move.charAt(2) - 'a');
+        int promotion = (move.length() > 4) ? "nbrq".indexOf(move.charAt(4)) + 1 : 0;
+        return (promotion << 12) | (from << 6) | to;
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // stand in constants, written the way the Polyglot sources declare them
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder("const U64 Random64[781] = {\n");
+        for (int i = 0; i < PolyglotBook.RANDOM64_SIZE; i++) {
+            sb.append(String.format("   U64(0x%016X),%n", random.nextLong()));
+        }
+        sb.append("};\n");
+        random64File = Files.createTempFile("random64", ".txt");
+        Files.writeString(random64File, sb.toString());
+        random64 = PolyglotBook.loadRandom64(random64File);
+        bookFile = Files.createTempFile("book", ".bin");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(random64File);
+        Files.deleteIfExists(bookFile);
+    }
+
+    private long key(String fen) {
+        return PolyglotBook.key(FENParser.parseFENotation120(fen), random64);
+    }
+
+    private void writeBook(List<PolyglotBook.Entry> entries) throws IOException {
+        List<PolyglotBook.Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(PolyglotBook.Entry::key, Long::compareUnsigned));
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(bookFile))) {
+            for (PolyglotBook.Entry e : sorted) {
+                out.writeLong(e.key());
+                out.writeShort(e.move());
+                out.writeShort(e.weight());
+                out.writeInt(e.learn());
+            }
+        }
+    }
+
+    @Test
+    void keyFollowsPolyglotLayout() {
+        long start = key(START);
+        // white pawns are kind 1 on the 2nd rank, black pawns kind 0 on the 7th
+        long pawns = 0;
+        for (int file = 0; file < 8; file++) pawns ^= random64[64 + 8 + file] ^ random64[6 * 8 + file];
+        assertEquals(pawns, start ^ key("rnbqkbnr/8/8/8/8/8/8/RNBQKBNR w KQkq - 0 1"));
+        // white to move and the four castling rights
+        long turnAndCastling = random64[780] ^ random64[768] ^ random64[769] ^ random64[770] ^ random64[771];
+        assertEquals(turnAndCastling, start ^ key("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b - - 0 1"));
+        assertEquals(start ^ random64[780], key(START.replace(" w ", " b ")));
+        // the en passant file only counts when a pawn can take
+        assertEquals(key("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1"),
+                key("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"));
+        assertEquals(key("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq - 0 3") ^ random64[772 + 5],
+                key("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"));
+    }
+
+    @Test
+    void matchesReferenceKeys() {
+        long[] polyglot = PolyglotBook.random64();
+        assertEquals(PolyglotBook.RANDOM64_SIZE, polyglot.length);
+        String[][] games = {
+                { START, "463b96181691fc9c" },
+                { "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", "823c9b50fd114196" },
+                { "rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2", "0756b94461c50fb0" },
+                { "rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2", "662fafb965db29d4" },
+                { "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3", "22a48b5a8e47ff78" },
+                { "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR b kq - 0 3", "652a607ca3f242c1" },
+                { "rnbq1bnr/ppp1pkpp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR w - - 0 4", "00fdd303c946bdd9" },
+                { "rnbqkbnr/p1pppppp/8/8/PpP4P/8/1P1PPPP1/RNBQKBNR b KQkq c3 0 3", "3c8123ea7b067637" },
+                { "rnbqkbnr/p1pppppp/8/8/P6P/R1p5/1P1PPPP1/1NBQKBNR b Kkq - 0 4", "5c3f9b829b279560" } };
+        for (String[] game : games) {
+            assertEquals(Long.parseUnsignedLong(game[1], 16),
+                    PolyglotBook.key(FENParser.parseFENotation120(game[0]), polyglot), game[0]);
+        }
+        // a copy, the table itself cannot be changed through it
+        polyglot[0] = 0;
+        assertNotEquals(0L, PolyglotBook.random64()[0]);
+    }
+
+    @Test
+    void findsEntriesAndPicksByWeight() throws IOException {
+        long start = key(START);
+        List<PolyglotBook.Entry> entries = new ArrayList<>();
+        entries.add(new PolyglotBook.Entry(start, polyglot("e2e4"), 3, 0));
+        entries.add(new PolyglotBook.Entry(start, polyglot("d2d4"), 1, 0));
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) entries.add(new PolyglotBook.Entry(random.nextLong(), 0, 1, 0));
+        writeBook(entries);
+
+        try (PolyglotBook book = new PolyglotBook(bookFile, random64)) {
+            assertEquals(1002, book.size());
+            assertEquals(2, book.entries(start).size());
+            assertTrue(book.entries(start ^ 1).isEmpty());
+            Board120 board = FENParser.startPos120();
+            int e4 = 0;
+            Random pick = new Random(3);
+            for (int i = 0; i < 4000; i++) {
+                String move = Move.printMove(book.pick(board, pick));
+                assertTrue(move.equals("e2e4") || move.equals("d2d4"));
+                if (move.equals("e2e4")) e4++;
+            }
+            assertTrue(e4 > 2800 && e4 < 3200, "e2e4 picked " + e4 + " times");
+            assertEquals(0, book.pick(FENParser.parseFENotation120("8/8/8/8/8/8/8/K6k w - - 0 1"), pick));
+        }
+    }
+
+    @Test
+    void enginePlaysBookMoveWithoutSearching() throws IOException {
+        writeBook(List.of(new PolyglotBook.Entry(key(START), polyglot("g1f3"), 1, 0)));
+        try (PolyglotBook book = new PolyglotBook(bookFile, random64)) {
+            Engine engine = new Engine(START, 0);
+            engine.setBook(book);
+            Search.Result result = engine.go(60_000, 60_000, 0, 0, 0);
+            assertEquals("g1f3", result.bestMove());
+            assertEquals(0, result.nodes());
+        }
+    }
+
+    @Test
+    void decodesCastlingAndPromotion() throws IOException {
+        String castle = "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1";
+        String promote = "8/P6k/8/8/8/8/8/K7 w - - 0 1";
+        writeBook(List.of(
+                new PolyglotBook.Entry(key(castle), polyglot("e1h1"), 1, 0),
+                new PolyglotBook.Entry(key(promote), polyglot("a7a8n"), 1, 0)));
+        try (PolyglotBook book = new PolyglotBook(bookFile, random64)) {
+            int move = book.pick(FENParser.parseFENotation120(castle), new Random());
+            assertEquals(Move.FLAG_CASTLE, Move.getFlag(move));
+            assertEquals("e1g1", Move.printMove(move));
+            move = book.pick(FENParser.parseFENotation120(promote), new Random());
+            assertEquals(Move.FLAG_PROMOTION, Move.getFlag(move));
+            assertEquals(polyglot("a7a8n"), PolyglotBook.encode(move));
+        }
+    }
+
+    @Test
+    void rejectsIncompleteConstants() throws IOException {
+        Files.writeString(random64File, "0x9D39247E33776D41\n");
+        assertThrows(IllegalArgumentException.class, () -> PolyglotBook.loadRandom64(random64File));
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.piece.San;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionIndexTest {
+
+    static final String FIRST = """
+            [Event "One"]
+            [White "Café"]
+            1. e4 e5 2. Nf3 Nc6 {a comment} 1-0
+
+            [Event "Two"]
+            1. Nf3 d5 2. d4 Nf6 1/2-1/2
+            """;
+    static final String SECOND = """
+            [Event "Three"]
+            1. d4 d5 2. Nf3 Nf6 3. Nc3 0-1
+
+            [Event "Four"]
+            [SetUp "1"]
+            [FEN "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1"]
+            1. e4 Kd7 2. Ke2 Ke8 3. Ke1 Kd7 *
+
+            [Event "Five"]
+            1. e4 e5 2. Qh5 Zz9 1-0
+            """;
+
+    private Path dir;
+    private Path index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("index");
+        Path first = dir.resolve("first.pgn");
+        Path second = dir.resolve("second.pgn");
+        Files.writeString(first, FIRST, StandardCharsets.ISO_8859_1);
+        Files.writeString(second, SECOND, StandardCharsets.ISO_8859_1);
+        PgnIndexer indexer = new PgnIndexer(0, 4, dir); // runs of 4 records, merged
+        indexer.addFile(first);
+        indexer.addFile(second);
+        index = dir.resolve("games.idx");
+        long records = indexer.build(index);
+        assertEquals(5, indexer.getGames());
+        assertEquals(1, indexer.getSkipped()); // Zz9
+        // 5 + 5 + 6 + 7 + 4 positions, the start of Four is repeated twice
+        assertEquals(27, indexer.getRecords());
+        assertEquals(25, records);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : files.toList()) Files.delete(path);
+        }
+        Files.delete(dir);
+    }
+
+    private static Board120 after(String fen, String... sans) {
+        Board120 board = (fen == null) ? FENParser.startPos120() : FENParser.parseFENotation120(fen);
+        San.play(board, List.of(sans));
+        return board;
+    }
+
+    private static String event(PositionIndex idx, long game) throws IOException {
+        return idx.read(game).tags().get("Event");
+    }
+
+    @Test
+    void findsGamesOfAPosition() throws IOException {
+        try (PositionIndex idx = new PositionIndex(index)) {
+            assertEquals(25, idx.size());
+            assertEquals(4, idx.count(PositionIndex.key(FENParser.startPos120())));
+            long[] games = idx.games(FENParser.startPos120(), 10);
+            assertEquals(4, games.length);
+            assertEquals("One", event(idx, games[0]));
+            assertEquals("Five", event(idx, games[3]));
+            assertEquals(3, idx.games(FENParser.startPos120(), 3).length);
+
+            long[] e5 = idx.games(after(null, "e4", "e5"), 10);
+            assertEquals(2, e5.length);
+            PgnReader.Game one = idx.read(e5[0]);
+            assertEquals("Café", one.tags().get("White"));
+            assertEquals(List.of("e4", "e5", "Nf3", "Nc6"), one.moves());
+            assertEquals(1, PositionIndex.file(e5[1]));
+
+            assertEquals(0, idx.games(after(null, "a4"), 10).length);
+        }
+    }
+
+    @Test
+    void findsTranspositionsAndIgnoresIdleEnPassant() throws IOException {
+        try (PositionIndex idx = new PositionIndex(index)) {
+            long[] games = idx.games(after(null, "d4", "d5", "Nf3", "Nf6"), 10);
+            assertEquals(2, games.length);
+            assertEquals("Two", event(idx, games[0]));
+            assertEquals("Three", event(idx, games[1]));
+            // after 1. e4 no black pawn can take on e3, with or without the square in the FEN
+            Board120 e4 = FENParser.parseFENotation120("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1");
+            assertEquals(2, idx.games(e4, 10).length);
+            assertEquals(PositionIndex.key(e4), PositionIndex.key(after(null, "e4")));
+        }
+    }
+
+    @Test
+    void indexesGamesFromTheirFen() throws IOException {
+        try (PositionIndex idx = new PositionIndex(index)) {
+            String fen = "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1";
+            long[] games = idx.games(FENParser.parseFENotation120(fen), 10);
+            assertEquals(1, games.length); // reached twice, indexed once
+            assertEquals("Four", event(idx, games[0]));
+            assertEquals("*", idx.read(games[0]).result());
+        }
+    }
+
+    @Test
+    void countsWithoutScanning() throws IOException {
+        try (PositionIndex idx = new PositionIndex(index)) {
+            // counts of 4, 2 and 1, and keys below and above all others (unsigned)
+            assertEquals(4, idx.count(PositionIndex.key(FENParser.startPos120())));
+            assertEquals(2, idx.count(PositionIndex.key(after(null, "e4", "e5"))));
+            assertEquals(1, idx.count(PositionIndex.key(after(null, "d4", "d5", "Nf3", "Nf6", "Nc3"))));
+            assertEquals(0, idx.count(0));
+            assertEquals(0, idx.count(-1));
+        }
+    }
+
+    @Test
+    void truncatesGamesLongerThanTheBoardHistory() throws IOException {
+        List<String> moves = new ArrayList<>();
+        for (int i = 0; i < 150; i++) moves.addAll(List.of("Nf3", "Nf6", "Ng1", "Ng8"));
+        PgnIndexer indexer = new PgnIndexer(0, 64, dir);
+        indexer.add(new PgnReader.Game(Map.of(), moves, "1/2-1/2"), 0);
+        assertEquals(1, indexer.getGames());
+        assertEquals(1, indexer.getTruncated());
+        assertEquals(0, indexer.getSkipped());
+        assertEquals(1 + Board120.INIT_BUFFER, indexer.getRecords());
+        // the same four positions over and over
+        assertEquals(4, indexer.build(dir.resolve("long.idx")));
+    }
+
+    @Test
+    void rejectsIndexOfOtherKeys() throws IOException {
+        byte[] bytes = Files.readAllBytes(index);
+        bytes[15] ^= 1; // the fingerprint
+        Files.write(index, bytes);
+        assertThrows(IllegalArgumentException.class, () -> new PositionIndex(index));
+    }
+
+    @Test
+    void packsFileAndOffset() {
+        long game = PositionIndex.game(3, 123456789L);
+        assertEquals(3, PositionIndex.file(game));
+        assertEquals(123456789L, PositionIndex.offset(game));
+        assertThrows(IllegalArgumentException.class, () -> PositionIndex.game(PositionIndex.MAX_FILES, 0));
+        assertThrows(IllegalArgumentException.class, () -> PositionIndex.game(0, PositionIndex.MAX_OFFSET + 1));
+    }
+}
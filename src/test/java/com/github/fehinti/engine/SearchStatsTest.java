@@ -0,0 +1,64 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.FENParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchStatsTest {
+
+    static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Test
+    void countsIterationsAndCache() {
+        Search search = new Search(new EvalCache(PESTO.getInstance(), 1 << 12));
+        Search.Result result = search.search(FENParser.parseFENotation120(KIWIPETE), Search.Limits.depth(4));
+        SearchStats.Snapshot stats = search.getStats();
+        assertEquals(result.nodes(), stats.nodes());
+        assertEquals(4, stats.iterations().size());
+        assertEquals(stats.nodes(), stats.iterations().stream().mapToLong(SearchStats.Iteration::nodes).sum());
+        assertTrue(stats.evalProbes() > 0);
+        assertTrue(stats.evalHits() <= stats.evalProbes());
+        if (SearchStats.ENABLED) {
+            assertTrue(stats.qnodes() > 0 && stats.qnodes() < stats.nodes());
+            assertEquals(stats.betaCutoffs(), Arrays.stream(stats.cutoffsByIndex()).sum());
+            assertTrue(stats.firstMoveCutoffRate() > 0.5);
+        } else {
+            assertEquals(0, stats.qnodes());
+            assertEquals(0, stats.betaCutoffs());
+        }
+    }
+
+    @Test
+    void snapshotsAddUp() {
+        long[] cutoffs = new long[SearchStats.CUTOFF_INDEXES];
+        cutoffs[0] = 3;
+        SearchStats.Snapshot a = new SearchStats.Snapshot(100, 40, 3, cutoffs, 10, 5,
+                List.of(new SearchStats.Iteration(1, 100, 1_000)));
+        SearchStats.Snapshot sum = a.plus(a);
+        assertEquals(200, sum.nodes());
+        assertEquals(80, sum.qnodes());
+        assertEquals(6, sum.cutoffsByIndex()[0]);
+        assertEquals(1.0, sum.firstMoveCutoffRate());
+        assertEquals(0.5, sum.evalHitRate());
+        assertEquals(2, sum.iterations().size());
+        assertEquals(100_000_000, sum.iterations().get(0).nps());
+    }
+
+    @Test
+    void formatsInfoLines() {
+        int move = firstMove();
+        Search.Result cp = new Search.Result(move, 23, 6, 1_000, 2_000_000, new int[] { move });
+        assertEquals("info depth 6 multipv 2 score cp 23 nodes 1000 nps 500000 time 2 pv " + cp.bestMove(),
+                cp.info(2));
+        assertTrue(new Search.Result(0, Search.MATE - 3, 3, 1, 1, new int[0]).info(1).contains(" score mate 2 "));
+        assertTrue(new Search.Result(0, -(Search.MATE - 2), 3, 1, 1, new int[0]).info(1).contains(" score mate -1 "));
+    }
+
+    private static int firstMove() {
+        return new Search(PESTO.getInstance()).search(FENParser.startPos120(), Search.Limits.depth(1)).move();
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTest {
+
+    static String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private Search search;
+
+    @BeforeEach
+    void setUp() {
+        search = new Search(PESTO.getInstance());
+    }
+
+    @Test
+    void findsMateInOne() {
+        Search.Result result = search.search(FENParser.parseFENotation120("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1"),
+                Search.Limits.depth(4));
+        assertEquals("a1a8", result.bestMove());
+        assertEquals(Search.MATE - 1, result.score());
+    }
+
+    @Test
+    void evaluatorsScoreInCentipawns() {
+        // a queen up, whichever evaluator the search runs on
+        Board120 board = FENParser.parseFENotation120("4k3/8/8/8/8/8/8/3QK3 w - - 0 1");
+        for (Evaluator evaluator : List.of(PESTO.getInstance(), SimpleEvaluator.getInstance())) {
+            int score = new Search(evaluator).search(board, Search.Limits.depth(1)).score();
+            assertTrue(score > 800 && score < 1500, evaluator + " " + score);
+        }
+    }
+
+    @Test
+    void stalemateHasNoMoveAndDrawScore() {
+        Search.Result result = search.search(FENParser.parseFENotation120("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1"),
+                Search.Limits.depth(3));
+        assertEquals(0, result.move());
+        assertEquals(0, result.score());
+    }
+
+    @Test
+    void boardIsRestoredAfterSearch() {
+        Board120 board = FENParser.parseFENotation120(KIWIPETE);
+        long key = board.getZobristKey();
+        search.search(board, Search.Limits.depth(3));
+        assertEquals(KIWIPETE, FENParser.getFENotation(board));
+        assertEquals(key, board.getZobristKey());
+    }
+
+    @Test
+    void stopsOnNodeBudget() {
+        Search.Result result = search.search(FENParser.parseFENotation120(KIWIPETE), new Search.Limits(20, 20_000));
+        assertTrue(result.depth() < 20);
+        assertNotEquals(0, result.move());
+        assertTrue(result.nodes() < 40_000);
+    }
+
+    @Test
+    void multiPvReturnsDistinctLinesBestFirst() {
+        Board120 board = FENParser.parseFENotation120(KIWIPETE);
+        Search.Result single = search.search(board, Search.Limits.depth(3));
+        List<List<Search.Result>> iterations = new ArrayList<>();
+        List<Search.Result> lines = search.search(board, Search.Limits.depth(3), 3, iterations::add);
+        assertEquals(3, lines.size());
+        assertEquals(3, iterations.size());
+        assertEquals(single.score(), lines.get(0).score());
+        Set<Integer> moves = new HashSet<>();
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(3, lines.get(i).depth());
+            assertTrue(moves.add(lines.get(i).move()));
+            if (i > 0) assertTrue(lines.get(i - 1).score() >= lines.get(i).score());
+        }
+        assertEquals(KIWIPETE, FENParser.getFENotation(board));
+    }
+
+    @Test
+    void multiPvStopsAtLegalMoveCount() {
+        // three legal king moves
+        List<Search.Result> lines = search.search(FENParser.parseFENotation120("7k/8/8/8/8/8/8/R6K b - - 0 1"),
+                Search.Limits.depth(2), 5, null);
+        assertEquals(3, lines.size());
+        // stalemate, a single empty line
+        lines = search.search(FENParser.parseFENotation120("k7/8/1Q6/8/8/8/8/7K b - - 0 1"),
+                Search.Limits.depth(2), 5, null);
+        assertEquals(1, lines.size());
+        assertEquals(0, lines.get(0).move());
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.FENParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TexelTunerTest {
+
+    static List<String> LINES = List.of(
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 1/2-1/2",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1 [1.0]",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - c9 \"0-1\";",
+            "not a position 1-0");
+
+    @Test
+    void startPositionIsEven() {
+        assertEquals(0.0, PESTO.getInstance().evaluate(FENParser.startPos120()));
+    }
+
+    @Test
+    void parsesResults() {
+        assertEquals(2, TexelTuner.parseResult("1-0"));
+        assertEquals(1, TexelTuner.parseResult("[0.5]"));
+        assertEquals(0, TexelTuner.parseResult("c9 \"0-1\";"));
+        assertEquals(-1, TexelTuner.parseResult("1"));
+    }
+
+    @Test
+    void compactPositionsEvaluateLikePESTO() throws IOException {
+        Path file = Files.createTempFile("texel", ".txt");
+        try {
+            Files.write(file, LINES);
+            TexelTuner tuner = new TexelTuner(PESTO.getInstance());
+            tuner.load(file);
+            assertEquals(3, tuner.size());
+            assertEquals(1, tuner.skipped);
+            double[] mid = new double[TexelTuner.CELLS], end = new double[TexelTuner.CELLS];
+            tuner.cells(mid, end);
+            PESTO pesto = tuner.toPESTO();
+            String[] fens = {
+                    "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1" };
+            for (int i = 0; i < fens.length; i++) {
+                assertEquals(pesto.evaluate(FENParser.parseFENotation120(fens[i])), tuner.evaluate(i, mid, end), 1e-9);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void tablesRoundTrip() throws IOException {
+        Path file = Files.createTempFile("pesto", ".tbl");
+        try {
+            PESTO.getInstance().save(file, "defaults");
+            PESTO loaded = PESTO.load(file);
+            assertArrayEquals(PESTO.MID_GAME_VAL, loaded.getMidGameVal());
+            assertArrayEquals(PESTO.END_GAME_VAL, loaded.getEndGameVal());
+            for (int pc = 0; pc < PESTO.PIECES; pc++) {
+                assertArrayEquals(PESTO.MID_GAME_PESTO[pc], loaded.getMidGameTable(pc));
+                assertArrayEquals(PESTO.END_GAME_PESTO[pc], loaded.getEndGameTable(pc));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.fehinti.engine;
+
+import com.github.fehinti.board.FENParser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeManagerTest {
+
+    static final long MS = 1_000_000;
+
+    @Test
+    void allocatesShareOfClock() {
+        // 60s + 1s sudden death: 59970 / 30 + 750
+        TimeManager time = TimeManager.forClock(true, 60_000, 1_000, 1_000, 0, 0);
+        assertEquals(59_970 / 30 + 750, time.getSoftMillis());
+        assertEquals(5 * time.getSoftMillis(), time.getHardMillis());
+        // black's clock, last move before the time control
+        TimeManager last = TimeManager.forClock(false, 60_000, 10_000, 0, 0, 1);
+        assertEquals(9_970 * 9 / 10, last.getHardMillis());
+        assertEquals(last.getHardMillis(), last.getSoftMillis());
+    }
+
+    @Test
+    void neverPlansBeyondTheReserve() {
+        // increment larger than the clock, hard limit stays below the clock
+        TimeManager time = TimeManager.forClock(true, 500, 500, 2_000, 2_000, 0);
+        assertTrue(time.getHardMillis() <= (500 - TimeManager.MOVE_OVERHEAD) * 4 / 10);
+        assertTrue(time.getSoftMillis() <= time.getHardMillis());
+        assertTrue(TimeManager.forClock(true, 0, 0, 0, 0, 0).getHardMillis() >= TimeManager.MIN_TIME);
+    }
+
+    @Test
+    void stableMoveStopsEarly() {
+        TimeManager time = new TimeManager(0, 1_000, 5_000);
+        long first = time.budget(42, 10);
+        long later = first;
+        for (int i = 0; i < 6; i++) later = time.budget(42, 10);
+        assertEquals((long) (1_000 * MS * TimeManager.UNSTABLE), first);
+        assertEquals((long) (1_000 * MS * TimeManager.STABLE), later);
+        assertFalse(time.nextIteration(42, 10, 600 * MS));
+    }
+
+    @Test
+    void instabilityAndScoreDropExtend() {
+        TimeManager time = new TimeManager(0, 1_000, 5_000);
+        for (int i = 0; i < 6; i++) time.budget(42, 10);
+        // new best move, score dropped by a pawn
+        assertTrue(time.nextIteration(7, -90, 2_000 * MS));
+        // 1.5 * 1.4 of the soft budget
+        assertFalse(time.nextIteration(-1, -200, 2_200 * MS));
+        // capped by the hard limit
+        TimeManager tight = new TimeManager(0, 1_000, 1_200);
+        assertEquals(1_200 * MS, tight.budget(7, 0));
+    }
+
+    @Test
+    void searchRespectsMoveTime() {
+        Search search = new Search(PESTO.getInstance());
+        long st = System.nanoTime();
+        Search.Result result = search.search(FENParser.parseFENotation120(SearchTest.KIWIPETE),
+                Search.Limits.time(TimeManager.fixed(200)));
+        long millis = (System.nanoTime() - st) / MS;
+        assertNotEquals(0, result.move());
+        assertTrue(millis < 1_000, "searched " + millis + " ms");
+    }
+}
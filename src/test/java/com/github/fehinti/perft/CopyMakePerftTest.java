@@ -0,0 +1,60 @@
+package com.github.fehinti.perft;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import com.github.fehinti.piece.Move;
+import com.github.fehinti.piece.MoveGenerator;
+import com.github.fehinti.piece.VectorAttack120;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CopyMakePerftTest {
+
+    static final int DEPTH = 3;
+
+    @Test
+    void allVariantsMatchSuite() throws IOException {
+        List<PerftSuite.Case> cases = PerftSuite.load(PerftSuite.DEFAULT_SUITE);
+        assertFalse(cases.isEmpty());
+        for (PerftSuite.Case c : cases) {
+            Board120 root = FENParser.parseFENotation120(c.fen());
+            long expected = c.expected()[DEPTH];
+            assertEquals(expected, CopyMakePerft.makeUnmakePerft(new Board120(root), DEPTH), c.fen());
+            assertEquals(expected, CopyMakePerft.perft(CopyMakePerft.newSlots(root, DEPTH), 0, DEPTH), c.fen());
+            assertEquals(expected, CopyMakePerft.parallelPerft(root, DEPTH), c.fen());
+            // none of them leaves the root changed
+            assertEquals(c.fen(), FENParser.getFENotation(root));
+        }
+    }
+
+    @Test
+    void copyMakeLeavesSourceUnchanged() {
+        walk(FENParser.parseFENotation120("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"), 2);
+        walk(FENParser.parseFENotation120("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"), 2);
+    }
+
+    static void walk(Board120 src, int depth) {
+        if (depth == 0) return;
+        Board120 dst = new Board120(src);
+        for (int move : MoveGenerator.generatePseudoLegal(src)) {
+            String fen = FENParser.getFENotation(src);
+            long zobrist = src.getZobristKey(), pawns = src.getPawnKey(), material = src.getMaterialKey();
+            Board120.copyMake(src, move, dst);
+            String name = Move.printMove(move);
+            assertEquals(fen, FENParser.getFENotation(src), name);
+            assertEquals(zobrist, src.getZobristKey(), name);
+            assertEquals(pawns, src.getPawnKey(), name);
+            assertEquals(material, src.getMaterialKey(), name);
+            // the copy holds what make would have given
+            Board120 made = new Board120(src);
+            made.make(move);
+            assertEquals(FENParser.getFENotation(made), FENParser.getFENotation(dst), name);
+            assertEquals(made.getZobristKey(), dst.getZobristKey(), name);
+            if (!VectorAttack120.isKingInCheck(dst)) walk(dst, depth - 1);
+        }
+    }
+}
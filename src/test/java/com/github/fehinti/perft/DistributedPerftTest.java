@@ -0,0 +1,59 @@
+package com.github.fehinti.perft;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import com.github.fehinti.board.FENParser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistributedPerftTest {
+
+    static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @Test
+    void splitMergesTranspositions() {
+        Map<String, Long> positions = DistributedPerft.split(FENParser.startPos120(), 3);
+        assertEquals(8902, positions.values().stream().mapToLong(Long::longValue).sum());
+        // e.g. 1.Nf3 Nf6 2.Nc3 and 1.Nc3 Nf6 2.Nf3
+        assertTrue(positions.size() < 8902);
+        assertEquals(2L, positions.get("rnbqkb1r/pppppppp/5n2/8/8/2N2N2/PPPPPPPP/R1BQKB1R b KQkq - 0 1").longValue());
+    }
+
+    @Test
+    void workerAnswersUnits() throws IOException {
+        StringWriter out = new StringWriter();
+        DistributedPerft.work(new BufferedReader(new StringReader("7 3 " + START + "\n8 1 " + START + "\nquit\n")),
+                new BufferedWriter(out));
+        assertEquals("7 8902\n8 20\n", out.toString().replace(System.lineSeparator(), "\n"));
+    }
+
+    @Test
+    void countsWithWorkerProcesses() throws IOException, InterruptedException {
+        assertEquals(197281, new DistributedPerft(2).perft(START, 4, 2));
+        assertEquals(97862, new DistributedPerft(3).perft(
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 3, 1));
+    }
+
+    @Test
+    void failsWhenWorkerDies() {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        DistributedPerft perft = new DistributedPerft(2, List.of(java, "-version"));
+        assertThrows(IOException.class, () -> perft.perft(START, 3, 1));
+    }
+
+    @Test
+    void failsOnMalformedReply() {
+        // answers every unit with an id that is not a number
+        DistributedPerft perft = new DistributedPerft(2, List.of("sh", "-c", "while read line; do echo 'x 1'; done"));
+        assertThrows(NumberFormatException.class, () -> perft.perft(START, 3, 1));
+    }
+}
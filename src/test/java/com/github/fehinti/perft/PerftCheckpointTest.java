@@ -0,0 +1,92 @@
+package com.github.fehinti.perft;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerftCheckpointTest {
+
+    static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    static long total(List<String> divide) {
+        return divide.stream().mapToLong(line -> Long.parseLong(line.substring(line.indexOf(": ") + 2))).sum();
+    }
+
+    @Test
+    void resumesFromCompleteCheckpoint() throws IOException {
+        Path file = Files.createTempFile("perft", ".ckpt");
+        Files.delete(file);
+        try {
+            PerftCheckpoint first = new PerftCheckpoint(file, KIWIPETE, 3, true);
+            List<String> divide = first.run(2);
+            assertEquals(48, divide.size());
+            assertEquals(97862, total(divide));
+            assertEquals(0, first.getResumed());
+
+            PerftCheckpoint second = new PerftCheckpoint(file, KIWIPETE, 3, true);
+            assertEquals(divide, second.run(2));
+            assertEquals(Files.readAllLines(file).size() - 1, second.getResumed());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void ignoresTornLastLine() throws IOException {
+        Path file = Files.createTempFile("perft", ".ckpt");
+        Files.delete(file);
+        try {
+            new PerftCheckpoint(file, KIWIPETE, 3, true).run(1);
+            List<String> lines = Files.readAllLines(file);
+            // a crash half way through the run, in the middle of writing an entry
+            String partial = String.join("\n", lines.subList(0, lines.size() / 2)) + "\n" + "e5f7 1";
+            Files.write(file, partial.getBytes(StandardCharsets.UTF_8));
+
+            PerftCheckpoint resumed = new PerftCheckpoint(file, KIWIPETE, 3, true);
+            assertEquals(97862, total(resumed.run(1)));
+            assertEquals(lines.size() / 2 - 1, resumed.getResumed());
+
+            // the torn entry is cut off, not completed
+            assertEquals(lines.size(), Files.readAllLines(file).size());
+            assertFalse(Files.readAllLines(file).contains("e5f7 1"));
+
+            PerftCheckpoint again = new PerftCheckpoint(file, KIWIPETE, 3, true);
+            assertEquals(97862, total(again.run(1)));
+            assertEquals(lines.size() - 1, again.getResumed());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void restartsOnTornHeader() throws IOException {
+        Path file = Files.createTempFile("perft", ".ckpt");
+        try {
+            Files.write(file, "perft 3 r3k2r".getBytes(StandardCharsets.UTF_8));
+            PerftCheckpoint perft = new PerftCheckpoint(file, KIWIPETE, 3, false);
+            assertEquals(97862, total(perft.run(1)));
+            assertEquals(0, perft.getResumed());
+            assertEquals("perft 3 " + KIWIPETE, Files.readAllLines(file).get(0));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void rejectsCheckpointOfAnotherRun() throws IOException {
+        Path file = Files.createTempFile("perft", ".ckpt");
+        Files.delete(file);
+        try {
+            new PerftCheckpoint(file, KIWIPETE, 2, false).run(1);
+            assertThrows(IllegalArgumentException.class, () -> new PerftCheckpoint(file, KIWIPETE, 3, false).run(1));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
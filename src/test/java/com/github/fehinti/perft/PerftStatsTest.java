@@ -0,0 +1,39 @@
+package com.github.fehinti.perft;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerftStatsTest {
+
+    // rows of the chessprogramming wiki perft results tables:
+    // nodes, captures, e.p., castles, promotions, checks, discovery checks, double checks, checkmates
+    static Stream<Arguments> tables() {
+        return Stream.of(
+                Arguments.of("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 4,
+                        new long[] { 197281, 1576, 0, 0, 0, 469, 0, 0, 8 }),
+                Arguments.of("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 3,
+                        new long[] { 97862, 17102, 45, 3162, 0, 993, 0, 0, 1 }),
+                Arguments.of("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 4,
+                        new long[] { 43238, 3348, 123, 0, 0, 1680, 106, 0, 17 }),
+                Arguments.of("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 3,
+                        new long[] { 9467, 1021, 4, 0, 120, 38, 2, 0, 22 }));
+    }
+
+    @ParameterizedTest
+    @MethodSource("tables")
+    void matchesWikiTables(String fen, int depth, long[] expected) {
+        Board120 board = FENParser.parseFENotation120(fen);
+        PerftStats.Stats stats = new PerftStats.Stats();
+        assertEquals(expected[0], PerftStats.stats(board, depth, stats));
+        assertArrayEquals(expected, stats.toArray());
+        assertEquals(expected[0], PerftStats.count(board, depth));
+        assertEquals(fen, FENParser.getFENotation(board));
+    }
+}
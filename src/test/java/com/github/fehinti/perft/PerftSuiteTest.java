@@ -0,0 +1,49 @@
+package com.github.fehinti.perft;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerftSuiteTest {
+
+    @Test
+    void parsesDepthsAndCompletesShortFen() {
+        PerftSuite.Case c = PerftSuite.parse("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - ;D1 14 ;D3 2812; id \"pos3\"", 7);
+        assertEquals("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", c.fen());
+        assertEquals(7, c.line());
+        assertArrayEquals(new long[] { -1, 14, -1, 2812 }, c.expected());
+        assertNull(PerftSuite.parse("# comment", 1));
+        assertNull(PerftSuite.parse("   ", 2));
+    }
+
+    @Test
+    void passesCorrectCounts() {
+        PerftSuite.Case c = PerftSuite.parse(
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1 ;D1 48 ;D2 2039 ;D3 97862", 1);
+        PerftSuite.Outcome outcome = PerftSuite.verify(c, 3);
+        assertTrue(outcome.passed());
+        assertEquals(3, outcome.depth());
+        assertEquals(48 + 2039 + 97862, outcome.totalNodes());
+    }
+
+    @Test
+    void stopsAtFirstWrongDepth() {
+        PerftSuite.Case c = PerftSuite.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 ;D1 20 ;D2 401 ;D3 8902", 1);
+        PerftSuite.Outcome outcome = PerftSuite.verify(c, 3);
+        assertFalse(outcome.passed());
+        assertEquals(2, outcome.depth());
+        assertEquals(400, outcome.nodes());
+        assertEquals(401, outcome.expected());
+    }
+
+    @Test
+    void runsSuiteConcurrently() throws InterruptedException {
+        List<PerftSuite.Case> cases = List.of(
+                PerftSuite.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 ;D1 20 ;D2 400 ;D3 8902", 1),
+                PerftSuite.parse("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1 ;D1 6 ;D2 264 ;D3 9467", 2),
+                PerftSuite.parse("not a position ;D1 1", 3));
+        assertEquals(1, PerftSuite.run(cases, 3, 2));
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.fehinti.piece;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static com.github.fehinti.board.Board120Utils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactMoveTest {
+
+    @Test
+    void encodesFromToAndFlagIn16Bits() {
+        int mv = Move.encodeCompact(63, 0, Move.COMPACT_PROMOTION | Move.COMPACT_CAPTURE | QUEEN_PROMO);
+        assertTrue(mv <= 0xffff);
+        assertEquals(63, Move.getCompactFrom(mv));
+        assertEquals(0, Move.getCompactTarget(mv));
+        assertEquals(0b1111, Move.getCompactFlag(mv));
+    }
+
+    @Test
+    void convertsFullMoveToCompact() {
+        int full = Move.encodeMove(E2, E4, 0, Move.FLAG_DOUBLE_PAWN_PUSH, 4);
+        int mv = Move.toCompact(full);
+        assertEquals(12, Move.getCompactFrom(mv)); // e2
+        assertEquals(28, Move.getCompactTarget(mv)); // e4
+        assertEquals(Move.FLAG_DOUBLE_PAWN_PUSH, Move.getCompactFlag(mv));
+    }
+
+    // every pseudo legal move survives a round trip, including the piece list index
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbqkbnr/pp1p1ppp/8/2pPp3/8/8/PPP1PPPP/RNBQKBNR w KQkq e6 0 3" })
+    void roundTripsGeneratedMoves(String fen) {
+        Board120 board = FENParser.parseFENotation120(fen);
+        List<Integer> moves = MoveGenerator.generatePseudoLegal(board);
+        for (int move : moves) {
+            assertEquals(move, Move.fromCompact(Move.toCompact(move), board), Move.dbgMove(move));
+        }
+    }
+
+    @Test
+    void sortsScoredMovesHighestFirst() {
+        int[] list = {
+                Move.scoredMove(5, -3),
+                Move.scoredMove(7, 100),
+                Move.scoredMove(0xffff, 2),
+                Move.scoredMove(1, -300), 0 };
+        Move.sortByScore(list, 4);
+        assertArrayEquals(new int[] { 100, 2, -3, -300 }, new int[] {
+                Move.getScore(list[0]), Move.getScore(list[1]), Move.getScore(list[2]), Move.getScore(list[3]) });
+        assertEquals(0xffff, Move.getScoredMove(list[1]));
+        assertEquals(1, Move.getScoredMove(list[3]));
+        assertEquals(0, list[4]); // outside of size, untouched
+    }
+
+    @Test
+    void clampsScoresToAShort() {
+        int high = Move.scoredMove(3, 1 << 20), low = Move.scoredMove(4, -(1 << 20));
+        assertEquals(Short.MAX_VALUE, Move.getScore(high));
+        assertEquals(Short.MIN_VALUE, Move.getScore(low));
+        assertEquals(3, Move.getScoredMove(high));
+        assertEquals(4, Move.getScoredMove(low));
+        assertTrue(high > Move.scoredMove(0xffff, Short.MAX_VALUE - 1));
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.fehinti.piece;
+
+import com.github.fehinti.board.Board120;
+import com.github.fehinti.board.FENParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SanTest {
+
+    static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private static List<String> sans(Board120 board) {
+        List<String> sans = new ArrayList<>();
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            if (San.isLegal(board, move)) sans.add(San.toSan(board, move));
+        }
+        return sans;
+    }
+
+    private static String san(String fen, String uci) {
+        Board120 board = FENParser.parseFENotation120(fen);
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            if (Move.printMove(move).equals(uci) && San.isLegal(board, move)) return San.toSan(board, move);
+        }
+        throw new AssertionError("no move " + uci);
+    }
+
+    @Test
+    void writesPiecesCapturesAndCastling() {
+        assertEquals("O-O", san(KIWIPETE, "e1g1"));
+        assertEquals("O-O-O", san(KIWIPETE, "e1c1"));
+        assertEquals("Nxf7", san(KIWIPETE, "e5f7"));
+        assertEquals("dxe6", san(KIWIPETE, "d5e6"));
+        assertEquals("Qxh3", san(KIWIPETE, "f3h3"));
+        assertEquals("e4", san(FENParser.getFENotation(FENParser.startPos120()), "e2e4"));
+        assertEquals("exd6", san("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 2", "e5d6"));
+    }
+
+    @Test
+    void disambiguatesByFileThenRank() {
+        String rooks = "4k3/8/8/R6R/8/8/8/R3K3 w - - 0 1";
+        assertEquals("Rhd5", san(rooks, "h5d5"));
+        assertEquals("R1a3", san(rooks, "a1a3"));
+        assertEquals("R5a3", san(rooks, "a5a3"));
+        String queens = "k7/8/8/8/8/2Q1Q3/8/2Q1K3 w - - 0 1";
+        assertEquals("Qc3d2", san(queens, "c3d2"));
+        // the knight on g1 is pinned, Nd2 needs no file
+        assertEquals("Nd2", san("4k3/8/8/8/8/8/8/1N2K1Nr w - - 0 1", "b1d2"));
+    }
+
+    @Test
+    void writesPromotionCheckAndMate() {
+        assertEquals("e8=Q+", san("k7/4P3/8/8/8/8/8/K7 w - - 0 1", "e7e8q"));
+        assertEquals("exf8=N", san("k4r2/4P3/8/8/8/8/8/K7 w - - 0 1", "e7f8n"));
+        assertEquals("Ra8#", san("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", "a1a8"));
+        assertEquals("Qxf7#", san("r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4", "h5f7"));
+    }
+
+    @Test
+    void parsesWhatItWrites() {
+        Board120 board = FENParser.parseFENotation120(KIWIPETE);
+        for (int move : MoveGenerator.generatePseudoLegal(board)) {
+            if (!San.isLegal(board, move)) continue;
+            assertEquals(move, San.parse(board, San.toSan(board, move)));
+            board.make(move);
+            for (int reply : MoveGenerator.generatePseudoLegal(board)) {
+                if (San.isLegal(board, reply)) assertEquals(reply, San.parse(board, San.toSan(board, reply)));
+            }
+            board.unmake(move);
+        }
+        assertEquals(48, sans(board).size());
+        assertEquals(FENParser.getFENotation(FENParser.parseFENotation120(KIWIPETE)), FENParser.getFENotation(board));
+    }
+
+    @Test
+    void parsesLooseInput() {
+        Board120 board = FENParser.parseFENotation120(KIWIPETE);
+        assertEquals(San.parse(board, "O-O"), San.parse(board, "0-0"));
+        assertEquals(San.parse(board, "Nxf7"), San.parse(board, "Nf7"));
+        assertEquals(San.parse(board, "dxe6"), San.parse(board, "d5e6!?"));
+        assertThrows(IllegalArgumentException.class, () -> San.parse(board, "Nc3"));
+        assertThrows(IllegalArgumentException.class, () -> San.parse(board, "Zz9"));
+        Board120 rooks = FENParser.parseFENotation120("4k3/8/8/R6R/8/8/8/R3K3 w - - 0 1");
+        assertThrows(IllegalArgumentException.class, () -> San.parse(rooks, "Ra3"));
+        assertEquals("a1a3", Move.printMove(San.parse(rooks, "R1a3")));
+    }
+}